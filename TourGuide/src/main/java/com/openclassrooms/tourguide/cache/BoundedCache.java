@@ -0,0 +1,257 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Thread-safe, size-bounded cache evicting the least recently used entries, with an optional time to live.
+ * <p>
+ * Values are loaded outside of the cache lock, so a slow loader never blocks the readers of other keys. Concurrent
+ * misses on the same key are coalesced: the first caller runs the loader, the others wait for its result instead of
+ * loading the value again. Hits, misses, coalesced loads and evictions are counted to help sizing the cache.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the cached values
+ */
+public class BoundedCache<K, V> {
+
+	private final int maximumSize;
+	private final long timeToLiveNanos;
+	private final LinkedHashMap<K, CacheEntry<V>> entries;
+	// Loads in progress, removed before being completed with the loaded value, or null, or the failure of the load
+	private final ConcurrentHashMap<K, CompletableFuture<V>> loadsInFlight = new ConcurrentHashMap<>();
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	private final LongAdder coalescedLoadCount = new LongAdder();
+
+	/**
+	 * @param maximumSize maximum number of entries kept, the least recently used ones being evicted first
+	 * @param timeToLive time after which an entry expires, null, zero or negative to keep entries until evicted
+	 */
+	public BoundedCache(int maximumSize, Duration timeToLive) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.timeToLiveNanos = (timeToLive == null || timeToLive.isZero() || timeToLive.isNegative()) ? 0 : timeToLive.toNanos();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				if (size() > BoundedCache.this.maximumSize) {
+					evictionCount.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the value cached for the key, loading and caching it when absent or expired.
+	 * A caller missing a key whose value is being loaded by another caller waits for that load and gets its result.
+	 *
+	 * @param key the key of the value
+	 * @param loader computes the value of a missing key, a null value is returned without being cached
+	 * @return the cached or freshly loaded value
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = getIfPresent(key);
+		if (value != null) {
+			return value;
+		}
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> loadInFlight = loadsInFlight.putIfAbsent(key, load);
+		if (loadInFlight != null) {
+			coalescedLoadCount.increment();
+			return awaitLoad(loadInFlight);
+		}
+		try {
+			// The load that just ended may have cached the value between the lookup and the registration of this one
+			value = peek(key);
+			if (value == null) {
+				value = loader.apply(key);
+				if (value != null) {
+					put(key, value);
+				}
+			}
+		} catch (RuntimeException | Error e) {
+			// Removed before being settled, so that a caller coming afterwards loads again instead of getting this failure
+			loadsInFlight.remove(key, load);
+			load.completeExceptionally(e);
+			throw e;
+		}
+		loadsInFlight.remove(key, load);
+		load.complete(value);
+		return value;
+	}
+
+	/**
+	 * Same as get(key, loader) for a loader completing its value asynchronously: the caller never waits for the load.
+	 * A caller missing a key whose value is being loaded by another caller gets the future of that load.
+	 *
+	 * @param key the key of the value
+	 * @param loader starts the load of a missing key, a null value, or a null future, is completed as null without being cached
+	 * @return a future completed with the cached or freshly loaded value
+	 */
+	public CompletableFuture<V> getAsync(K key, Function<? super K, ? extends CompletableFuture<V>> loader) {
+		V value = getIfPresent(key);
+		if (value != null) {
+			return CompletableFuture.completedFuture(value);
+		}
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> loadInFlight = loadsInFlight.putIfAbsent(key, load);
+		if (loadInFlight != null) {
+			coalescedLoadCount.increment();
+			return loadInFlight;
+		}
+		// The load that just ended may have cached the value between the lookup and the registration of this one
+		value = peek(key);
+		CompletableFuture<V> loading;
+		try {
+			loading = (value != null) ? CompletableFuture.completedFuture(value) : loader.apply(key);
+		} catch (RuntimeException | Error e) {
+			loading = CompletableFuture.failedFuture(e);
+		}
+		if (loading == null) {
+			loading = CompletableFuture.completedFuture(null);
+		}
+		loading.whenComplete((loadedValue, e) -> {
+			if (e == null && loadedValue != null) {
+				put(key, loadedValue);
+			}
+			// Removed before being settled, so that a caller coming afterwards loads again instead of getting this failure
+			loadsInFlight.remove(key, load);
+			if (e != null) {
+				load.completeExceptionally(e);
+			} else {
+				load.complete(loadedValue);
+			}
+		});
+		return load;
+	}
+
+	/**
+	 * @param key the key of the value
+	 * @return the cached value, or null when absent or expired
+	 */
+	public V getIfPresent(K key) {
+		synchronized (entries) {
+			CacheEntry<V> entry = entries.get(key);
+			if (entry != null && entry.isExpired(System.nanoTime())) {
+				entries.remove(key);
+				entry = null;
+			}
+			if (entry == null) {
+				missCount.increment();
+				return null;
+			}
+			hitCount.increment();
+			return entry.value;
+		}
+	}
+
+	/**
+	 * @return the cached value, or null when absent or expired, without counting a hit or a miss
+	 */
+	private V peek(K key) {
+		synchronized (entries) {
+			CacheEntry<V> entry = entries.get(key);
+			return (entry == null || entry.isExpired(System.nanoTime())) ? null : entry.value;
+		}
+	}
+
+	private static <V> V awaitLoad(CompletableFuture<V> load) {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			// Gives the waiters the exception thrown by the loader
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	public void put(K key, V value) {
+		long expiresAt = (timeToLiveNanos == 0) ? 0 : System.nanoTime() + timeToLiveNanos;
+		synchronized (entries) {
+			entries.put(key, new CacheEntry<>(value, expiresAt));
+		}
+	}
+
+	public void invalidate(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return the number of misses served by the load of another caller instead of calling the loader
+	 */
+	public long getCoalescedLoadCount() {
+		return coalescedLoadCount.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * @return the share of the lookups served from the cache, between 0 and 1
+	 */
+	public double getHitRatio() {
+		long hits = getHitCount();
+		long lookups = hits + getMissCount();
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+	}
+
+	private static class CacheEntry<V> {
+		private final V value;
+		// System.nanoTime() after which the entry is expired, 0 if it never expires
+		private final long expiresAt;
+
+		private CacheEntry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isExpired(long now) {
+			return expiresAt != 0 && now - expiresAt >= 0;
+		}
+	}
+}
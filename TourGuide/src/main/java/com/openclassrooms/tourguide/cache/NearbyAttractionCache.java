@@ -0,0 +1,143 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.openclassrooms.tourguide.catalog.AttractionSnapshot;
+import com.openclassrooms.tourguide.spatial.AttractionIndex;
+import com.openclassrooms.tourguide.spatial.AttractionIndex.RankedAttraction;
+import com.openclassrooms.tourguide.spatial.GeoDistance;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Memoizes, per latitude/longitude cell of the globe, the attractions that can be among the k nearest of a location
+ * of that cell, so that the users standing near the same spots share one nearest attractions search.
+ * <p>
+ * The candidates of a cell are the attractions lying within d + 2r of its center, d being the distance from the center
+ * to its k-th nearest attraction and r the largest distance from the center to a point of the cell: the k attractions
+ * within d of the center are within d + r of any point of the cell, so the k nearest of that point are within d + 2r
+ * of the center. A request only ranks the candidates of its cell by exact distance, which gives the same attractions,
+ * in the same order, as a search of the whole index.
+ * <p>
+ * Entries are keyed by the catalog version as well, so that a catalog refresh is never served outdated candidates,
+ * the entries of the previous versions being evicted as the least recently used.
+ */
+public class NearbyAttractionCache {
+
+	private static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+	private static final double DEFAULT_CELL_SIZE_DEGREES = 0.1;
+	// Safety margin absorbing the rounding of the distances, in statute miles
+	private static final double CANDIDATE_MARGIN_MILES = 1e-3;
+
+	private final BoundedCache<CellKey, List<Attraction>> cache;
+	private final double cellSizeDegrees;
+	private final double cellRadiusMiles;
+
+	public NearbyAttractionCache() {
+		this(DEFAULT_MAXIMUM_SIZE, DEFAULT_CELL_SIZE_DEGREES);
+	}
+
+	/**
+	 * @param maximumSize maximum number of cells kept
+	 * @param cellSizeDegrees size of the cells, in degrees of latitude and longitude
+	 */
+	public NearbyAttractionCache(int maximumSize, double cellSizeDegrees) {
+		if (!(cellSizeDegrees > 0) || cellSizeDegrees > 180) {
+			throw new IllegalArgumentException("Cell size must be within ]0, 180] degrees: " + cellSizeDegrees);
+		}
+		this.cache = new BoundedCache<>(maximumSize, Duration.ZERO);
+		this.cellSizeDegrees = cellSizeDegrees;
+		// A point of a cell is at most half a cell size away from the center latitude, then at most half a cell size along
+		// its parallel, as a longitude degree is never longer than a latitude one
+		this.cellRadiusMiles = GeoDistance.degreesToMiles(cellSizeDegrees);
+	}
+
+	/**
+	 * Returns the k attractions closest to the location, at most maxRadiusMiles away from it, with their distance, as
+	 * AttractionIndex.rankNearest does. The candidates of the cell of the location are searched in the attraction index
+	 * of the snapshot on a miss.
+	 *
+	 * @param attractionSnapshot current attractions
+	 * @param location center of the search
+	 * @param k maximum number of attractions returned
+	 * @param maxRadiusMiles largest distance of the attractions returned, in statute miles, infinite for no limit
+	 * @return the k nearest attractions within maxRadiusMiles, sorted by increasing distance
+	 */
+	public List<RankedAttraction> rankNearest(AttractionSnapshot attractionSnapshot, Location location, int k, double maxRadiusMiles) {
+		if (k <= 0 || !(maxRadiusMiles >= 0)) {
+			return new ArrayList<>();
+		}
+		CellKey cellKey = new CellKey(attractionSnapshot.getVersion(), k, latitudeCell(location.latitude), longitudeCell(location.longitude));
+		List<Attraction> candidates = cache.get(cellKey, key -> findCandidates(attractionSnapshot.getAttractionIndex(), key));
+
+		List<RankedAttraction> rankedAttractions = new ArrayList<>(candidates.size());
+		for (Attraction candidate : candidates) {
+			double distance = GeoDistance.miles(candidate, location);
+			if (distance <= maxRadiusMiles) {
+				rankedAttractions.add(new RankedAttraction(candidate, distance));
+			}
+		}
+		// List.sort is stable: ties keep the original order of the attractions, the candidates being in that order
+		rankedAttractions.sort(Comparator.comparingDouble(RankedAttraction::distanceMiles));
+		return new ArrayList<>(rankedAttractions.subList(0, Math.min(k, rankedAttractions.size())));
+	}
+
+	/**
+	 * @return the attractions that can be among the k nearest of a point of the cell, in their original order
+	 */
+	private List<Attraction> findCandidates(AttractionIndex attractionIndex, CellKey cellKey) {
+		// Center of the part of the cell lying on the globe, the last cells being narrower when the cell size does not divide it
+		double minLatitude = -90 + cellKey.latitudeCell * cellSizeDegrees;
+		double minLongitude = -180 + cellKey.longitudeCell * cellSizeDegrees;
+		Location cellCenter = new Location((minLatitude + Math.min(90, minLatitude + cellSizeDegrees)) / 2,
+				(minLongitude + Math.min(180, minLongitude + cellSizeDegrees)) / 2);
+		List<RankedAttraction> nearest = attractionIndex.rankNearest(cellCenter, cellKey.k, Double.POSITIVE_INFINITY);
+		if (nearest.size() < cellKey.k) {
+			return List.copyOf(attractionIndex.getAttractions());
+		}
+		double kthNearestMiles = nearest.get(nearest.size() - 1).distanceMiles();
+		return List.copyOf(attractionIndex.findWithin(cellCenter, kthNearestMiles + 2 * cellRadiusMiles + CANDIDATE_MARGIN_MILES));
+	}
+
+	private int latitudeCell(double latitude) {
+		int latitudeCells = (int) Math.ceil(180 / cellSizeDegrees);
+		return Math.max(0, Math.min(latitudeCells - 1, (int) Math.floor((latitude + 90) / cellSizeDegrees)));
+	}
+
+	private int longitudeCell(double longitude) {
+		int longitudeCells = (int) Math.ceil(360 / cellSizeDegrees);
+		double normalizedLongitude = longitude - 360 * Math.floor((longitude + 180) / 360);
+		return Math.max(0, Math.min(longitudeCells - 1, (int) Math.floor((normalizedLongitude + 180) / cellSizeDegrees)));
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public double getCellSizeDegrees() {
+		return cellSizeDegrees;
+	}
+
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	public double getHitRatio() {
+		return cache.getHitRatio();
+	}
+
+	private record CellKey(long catalogVersion, int k, int latitudeCell, int longitudeCell) {
+	}
+}
@@ -0,0 +1,94 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the reward points granted by RewardCentral for an (attraction, user) pair,
+ * so that repeated nearby-attraction requests and reward recomputations skip the slow remote call.
+ * Concurrent requests for the same pair share a single remote call.
+ */
+public class RewardPointsCache {
+
+	private static final int DEFAULT_MAXIMUM_SIZE = 100_000;
+	private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(30);
+
+	private final BoundedCache<RewardPointsKey, Integer> cache;
+
+	public RewardPointsCache() {
+		this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * @param maximumSize maximum number of (attraction, user) pairs kept
+	 * @param timeToLive time after which cached points are requested again, zero to keep them until evicted
+	 */
+	public RewardPointsCache(int maximumSize, Duration timeToLive) {
+		this.cache = new BoundedCache<>(maximumSize, timeToLive);
+	}
+
+	/**
+	 * Returns the cached reward points of the pair, calling the loader and caching its result on a miss.
+	 *
+	 * @param attractionId identifier of the attraction
+	 * @param userId identifier of the user
+	 * @param loader requests the reward points from RewardCentral
+	 * @return the reward points of the user for that attraction
+	 */
+	public int getRewardPoints(UUID attractionId, UUID userId, IntSupplier loader) {
+		return cache.get(new RewardPointsKey(attractionId, userId), key -> loader.getAsInt());
+	}
+
+	/**
+	 * Returns the cached reward points of the pair, starting the loader and caching its result on a miss, unless a
+	 * load of the pair is already in flight, whose result is then shared.
+	 *
+	 * @param attractionId identifier of the attraction
+	 * @param userId identifier of the user
+	 * @param loader requests the reward points from RewardCentral without waiting for them
+	 * @return a future completed with the reward points of the user for that attraction
+	 */
+	public CompletableFuture<Integer> getRewardPointsAsync(UUID attractionId, UUID userId, Supplier<CompletableFuture<Integer>> loader) {
+		return cache.getAsync(new RewardPointsKey(attractionId, userId), key -> loader.get());
+	}
+
+	/**
+	 * @return the cached reward points of the pair, or null when they are not cached
+	 */
+	public Integer getIfPresent(UUID attractionId, UUID userId) {
+		return cache.getIfPresent(new RewardPointsKey(attractionId, userId));
+	}
+
+	public void put(UUID attractionId, UUID userId, int rewardPoints) {
+		cache.put(new RewardPointsKey(attractionId, userId), rewardPoints);
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	/**
+	 * @return the number of requests served by the remote call of a concurrent request
+	 */
+	public long getCoalescedLoadCount() {
+		return cache.getCoalescedLoadCount();
+	}
+
+	public double getHitRatio() {
+		return cache.getHitRatio();
+	}
+
+	private record RewardPointsKey(UUID attractionId, UUID userId) {
+	}
+}
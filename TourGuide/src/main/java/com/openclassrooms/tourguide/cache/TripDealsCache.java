@@ -0,0 +1,77 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import tripPricer.Provider;
+
+/**
+ * Memoizes the providers priced by TripPricer for a user and the trip parameters they were priced with, so that
+ * repeated trip deals requests skip the slow pricing call. Concurrent requests for the same parameters share a single
+ * pricing call. A change of preferences or of reward points gives a new key, so that outdated deals are never served.
+ */
+public class TripDealsCache {
+
+	private static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+	private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+	private final BoundedCache<TripDealsKey, List<Provider>> cache;
+
+	public TripDealsCache() {
+		this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * @param maximumSize maximum number of priced trips kept
+	 * @param timeToLive time after which a trip is priced again, zero to keep the deals until evicted
+	 */
+	public TripDealsCache(int maximumSize, Duration timeToLive) {
+		this.cache = new BoundedCache<>(maximumSize, timeToLive);
+	}
+
+	/**
+	 * Returns the cached providers of the trip, calling the loader and caching its result on a miss.
+	 *
+	 * @param userId identifier of the user
+	 * @param numberOfAdults number of adults travelling
+	 * @param numberOfChildren number of children travelling
+	 * @param tripDuration duration of the trip, in nights
+	 * @param rewardPoints cumulative reward points of the user
+	 * @param loader requests the providers from TripPricer
+	 * @return the providers of the trip, unmodifiable
+	 */
+	public List<Provider> getTripDeals(UUID userId, int numberOfAdults, int numberOfChildren, int tripDuration, int rewardPoints,
+									   Supplier<List<Provider>> loader) {
+		// Shared between the users of the entry, it must not be modified
+		return cache.get(new TripDealsKey(userId, numberOfAdults, numberOfChildren, tripDuration, rewardPoints),
+				key -> List.copyOf(loader.get()));
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	/**
+	 * @return the number of requests served by the pricing call of a concurrent request
+	 */
+	public long getCoalescedLoadCount() {
+		return cache.getCoalescedLoadCount();
+	}
+
+	public double getHitRatio() {
+		return cache.getHitRatio();
+	}
+
+	private record TripDealsKey(UUID userId, int numberOfAdults, int numberOfChildren, int tripDuration, int rewardPoints) {
+	}
+}
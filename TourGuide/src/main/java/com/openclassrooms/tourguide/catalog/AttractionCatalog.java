@@ -0,0 +1,151 @@
+package com.openclassrooms.tourguide.catalog;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * Holds the current AttractionSnapshot so that the attractions are fetched from GpsUtil once per refresh interval
+ * instead of once per reward or nearby-attraction computation.
+ * <p>
+ * The first caller noticing that the refresh interval has elapsed reloads the attractions while the others keep
+ * reading the current snapshot, which is then swapped atomically. Unchanged attractions keep their instance (hence
+ * their attractionId) from one refresh to another and the version only increases when the catalog content changes.
+ */
+public class AttractionCatalog {
+	private Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+	private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofHours(1);
+
+	private final Supplier<List<Attraction>> attractionSource;
+	private final Duration refreshInterval;
+	private final AtomicReference<AttractionSnapshot> currentSnapshot = new AtomicReference<>();
+	private final ReentrantLock refreshLock = new ReentrantLock();
+	private volatile Instant nextRefresh;
+
+	public AttractionCatalog(GpsUtil gpsUtil) {
+		this(gpsUtil, DEFAULT_REFRESH_INTERVAL);
+	}
+
+	public AttractionCatalog(GpsUtil gpsUtil, Duration refreshInterval) {
+		this(gpsUtil::getAttractions, refreshInterval);
+	}
+
+	/**
+	 * @param attractionSource supplier of the up-to-date attractions
+	 * @param refreshInterval time after which the attractions are reloaded, zero or negative to never reload them automatically
+	 */
+	public AttractionCatalog(Supplier<List<Attraction>> attractionSource, Duration refreshInterval) {
+		this.attractionSource = attractionSource;
+		this.refreshInterval = refreshInterval;
+		refresh();
+	}
+
+	/**
+	 * Returns the current snapshot of the catalog, reloading it beforehand when the refresh interval has elapsed.
+	 * Only one thread reloads the attractions, the others are served the current snapshot meanwhile.
+	 *
+	 * @return the current AttractionSnapshot
+	 */
+	public AttractionSnapshot getSnapshot() {
+		if (isRefreshDue() && refreshLock.tryLock()) {
+			try {
+				if (isRefreshDue()) {
+					reload();
+				}
+			} finally {
+				refreshLock.unlock();
+			}
+		}
+		return currentSnapshot.get();
+	}
+
+	/**
+	 * @return the version of the current snapshot
+	 */
+	public long getVersion() {
+		return currentSnapshot.get().getVersion();
+	}
+
+	/**
+	 * Reloads the attractions right away, whatever the refresh interval.
+	 *
+	 * @return the snapshot in use once reloaded
+	 */
+	public AttractionSnapshot refresh() {
+		refreshLock.lock();
+		try {
+			reload();
+		} finally {
+			refreshLock.unlock();
+		}
+		return currentSnapshot.get();
+	}
+
+	private boolean isRefreshDue() {
+		Instant refreshTime = nextRefresh;
+		return refreshTime != null && !Instant.now().isBefore(refreshTime);
+	}
+
+	private void reload() {
+		Instant now = Instant.now();
+		AttractionSnapshot previousSnapshot = currentSnapshot.get();
+		try {
+			List<Attraction> attractions = attractionSource.get();
+			if (previousSnapshot == null) {
+				currentSnapshot.set(new AttractionSnapshot(1, attractions, now));
+				logger.debug("Attraction catalog loaded with " + attractions.size() + " attractions.");
+			} else {
+				List<Attraction> mergedAttractions = reuseKnownAttractions(previousSnapshot.getAttractions(), attractions);
+				if (!mergedAttractions.equals(previousSnapshot.getAttractions())) {
+					long version = previousSnapshot.getVersion() + 1;
+					currentSnapshot.set(new AttractionSnapshot(version, mergedAttractions, now));
+					logger.debug("Attraction catalog updated to version " + version + " with " + mergedAttractions.size() + " attractions.");
+				}
+			}
+		} catch (RuntimeException e) {
+			if (previousSnapshot == null) {
+				throw e;
+			}
+			logger.warn("Attraction catalog refresh failed, keeping version " + previousSnapshot.getVersion() + ": " + e.getMessage());
+		}
+		nextRefresh = (refreshInterval.isZero() || refreshInterval.isNegative()) ? null : now.plus(refreshInterval);
+	}
+
+	/**
+	 * Replaces the freshly loaded attractions by the already known instances describing the same attraction,
+	 * so that their attractionId stays stable across versions.
+	 */
+	private static List<Attraction> reuseKnownAttractions(List<Attraction> knownAttractions, List<Attraction> loadedAttractions) {
+		Map<String, Attraction> knownAttractionsByName = new HashMap<>();
+		for (Attraction knownAttraction : knownAttractions) {
+			knownAttractionsByName.put(knownAttraction.attractionName, knownAttraction);
+		}
+		List<Attraction> mergedAttractions = new ArrayList<>(loadedAttractions.size());
+		for (Attraction loadedAttraction : loadedAttractions) {
+			Attraction knownAttraction = knownAttractionsByName.get(loadedAttraction.attractionName);
+			mergedAttractions.add(isSameAttraction(knownAttraction, loadedAttraction) ? knownAttraction : loadedAttraction);
+		}
+		return mergedAttractions;
+	}
+
+	private static boolean isSameAttraction(Attraction knownAttraction, Attraction loadedAttraction) {
+		return knownAttraction != null
+				&& Objects.equals(knownAttraction.city, loadedAttraction.city)
+				&& Objects.equals(knownAttraction.state, loadedAttraction.state)
+				&& knownAttraction.latitude == loadedAttraction.latitude
+				&& knownAttraction.longitude == loadedAttraction.longitude;
+	}
+}
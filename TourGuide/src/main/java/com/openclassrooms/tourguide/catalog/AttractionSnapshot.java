@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.catalog;
+
+import java.time.Instant;
+import java.util.List;
+
+import com.openclassrooms.tourguide.spatial.AttractionIndex;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * Immutable view of the attraction catalog at a given version, along with its spatial index.
+ */
+public class AttractionSnapshot {
+
+	private final long version;
+	private final AttractionIndex attractionIndex;
+	private final Instant loadedAt;
+
+	public AttractionSnapshot(long version, List<Attraction> attractions, Instant loadedAt) {
+		this.version = version;
+		this.attractionIndex = new AttractionIndex(attractions);
+		this.loadedAt = loadedAt;
+	}
+
+	/**
+	 * @return the catalog version, incremented each time the set of attractions changes
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the unmodifiable list of attractions of this version
+	 */
+	public List<Attraction> getAttractions() {
+		return attractionIndex.getAttractions();
+	}
+
+	public AttractionIndex getAttractionIndex() {
+		return attractionIndex;
+	}
+
+	public Instant getLoadedAt() {
+		return loadedAt;
+	}
+}
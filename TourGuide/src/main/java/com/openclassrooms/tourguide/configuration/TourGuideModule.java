@@ -1,23 +1,180 @@
 package com.openclassrooms.tourguide.configuration;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cache.NearbyAttractionCache;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.catalog.AttractionCatalog;
+import com.openclassrooms.tourguide.executor.BatchExecutor;
+import com.openclassrooms.tourguide.gateway.RewardCentralGateway;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.model.LocationRetentionPolicy;
+import com.openclassrooms.tourguide.model.UserFactory;
+import com.openclassrooms.tourguide.model.VisitedLocationLog;
+import com.openclassrooms.tourguide.persistence.EventJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshotStore;
 import com.openclassrooms.tourguide.service.RewardsService;
 
 @Configuration
 public class TourGuideModule {
+
+	@Value("${tourguide.catalog.refresh-interval:PT1H}")
+	private Duration catalogRefreshInterval;
+
+	@Value("${tourguide.rewards.points-cache.maximum-size:100000}")
+	private int rewardPointsCacheMaximumSize;
+
+	@Value("${tourguide.rewards.points-cache.time-to-live:PT30M}")
+	private Duration rewardPointsCacheTimeToLive;
+
+	@Value("${tourguide.trip-deals.cache.maximum-size:10000}")
+	private int tripDealsCacheMaximumSize;
+
+	@Value("${tourguide.trip-deals.cache.time-to-live:PT10M}")
+	private Duration tripDealsCacheTimeToLive;
+
+	@Value("${tourguide.nearby-attractions.cache.maximum-size:10000}")
+	private int nearbyAttractionCacheMaximumSize;
+
+	@Value("${tourguide.nearby-attractions.cache.cell-size-degrees:0.1}")
+	private double nearbyAttractionCacheCellSizeDegrees;
+
+	@Value("${tourguide.rewards.central.max-in-flight-requests:512}")
+	private int rewardCentralMaxInFlightRequests;
+
+	@Value("${tourguide.batch.core-pool-size:200}")
+	private int batchCorePoolSize;
+
+	@Value("${tourguide.batch.maximum-pool-size:200}")
+	private int batchMaximumPoolSize;
+
+	@Value("${tourguide.batch.queue-capacity:10000}")
+	private int batchQueueCapacity;
+
+	@Value("${tourguide.batch.backpressure-policy:CALLER_RUNS}")
+	private BatchExecutor.BackpressurePolicy batchBackpressurePolicy;
+
+	@Value("${tourguide.batch.chunk-size:20}")
+	private int batchChunkSize;
+
+	@Value("${tourguide.batch.execution-mode:PLATFORM}")
+	private BatchExecutor.ExecutionMode batchExecutionMode;
+
+	@Value("${tourguide.batch.virtual.max-concurrent-calls:1000}")
+	private int batchMaxConcurrentCalls;
+
+	@Value("${tourguide.user.location-history.max-raw-locations:500}")
+	private int maxRawLocations;
+
+	@Value("${tourguide.user.location-history.max-hourly-summaries:168}")
+	private int maxHourlySummaries;
+
+	@Value("${tourguide.user.location-history.max-daily-summaries:365}")
+	private int maxDailySummaries;
+
+	@Value("${tourguide.user.location-history.storage:OBJECTS}")
+	private VisitedLocationLog.Storage locationHistoryStorage;
+
+	@Value("${tourguide.internal-users.seed:#{null}}")
+	private Long internalUserSeed;
+
+	@Value("${tourguide.internal-users.generate-in-background:false}")
+	private boolean internalUserGenerationInBackground;
+
+	@Value("${tourguide.snapshot.enabled:false}")
+	private boolean snapshotEnabled;
+
+	@Value("${tourguide.snapshot.path:data/users.snapshot}")
+	private Path snapshotPath;
+
+	@Value("${tourguide.snapshot.interval:PT5M}")
+	private Duration snapshotInterval;
+
+	@Value("${tourguide.journal.enabled:false}")
+	private boolean journalEnabled;
+
+	@Value("${tourguide.journal.directory:data/journal}")
+	private Path journalDirectory;
+
+	@Value("${tourguide.journal.max-segment-bytes:67108864}")
+	private long journalMaxSegmentBytes;
+
+	@Value("${tourguide.journal.flush-interval:PT0.01S}")
+	private Duration journalFlushInterval;
 	
 	@Bean
 	public GpsUtil getGpsUtil() {
 		return new GpsUtil();
 	}
+
+	@Bean
+	public AttractionCatalog getAttractionCatalog() {
+		return new AttractionCatalog(getGpsUtil(), catalogRefreshInterval);
+	}
+	
+	@Bean
+	public RewardPointsCache getRewardPointsCache() {
+		return new RewardPointsCache(rewardPointsCacheMaximumSize, rewardPointsCacheTimeToLive);
+	}
+	
+	@Bean
+	public TripDealsCache getTripDealsCache() {
+		return new TripDealsCache(tripDealsCacheMaximumSize, tripDealsCacheTimeToLive);
+	}
+	
+	@Bean
+	public NearbyAttractionCache getNearbyAttractionCache() {
+		return new NearbyAttractionCache(nearbyAttractionCacheMaximumSize, nearbyAttractionCacheCellSizeDegrees);
+	}
 	
 	@Bean
 	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+		return new RewardsService(getAttractionCatalog(), getRewardCentralGateway(), getRewardPointsCache(), getBatchExecutor(),
+				getEventJournal());
+	}
+
+	@Bean
+	public EventJournal getEventJournal() {
+		return new EventJournal(journalDirectory, journalMaxSegmentBytes, journalFlushInterval, journalEnabled);
+	}
+
+	@Bean
+	public BatchExecutor getBatchExecutor() {
+		return new BatchExecutor(batchCorePoolSize, batchMaximumPoolSize, batchQueueCapacity, batchBackpressurePolicy, batchChunkSize,
+				batchExecutionMode, batchMaxConcurrentCalls);
+	}
+
+	@Bean
+	public RewardCentralGateway getRewardCentralGateway() {
+		return new RewardCentralGateway(getRewardCentral(), rewardCentralMaxInFlightRequests);
+	}
+	
+	@Bean
+	public LocationRetentionPolicy getLocationRetentionPolicy() {
+		return new LocationRetentionPolicy(maxRawLocations, maxHourlySummaries, maxDailySummaries);
+	}
+
+	@Bean
+	public UserFactory getUserFactory() {
+		return new UserFactory(getLocationRetentionPolicy(), locationHistoryStorage);
+	}
+	
+	@Bean
+	public InternalUserGenerator getInternalUserGenerator() {
+		return new InternalUserGenerator(internalUserSeed, internalUserGenerationInBackground, getUserFactory());
+	}
+	
+	@Bean
+	public UserSnapshotStore getUserSnapshotStore() {
+		return new UserSnapshotStore(snapshotPath, snapshotInterval, snapshotEnabled, getUserFactory());
 	}
 	
 	@Bean
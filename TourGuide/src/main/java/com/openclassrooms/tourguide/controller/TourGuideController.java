@@ -1,15 +1,23 @@
 package com.openclassrooms.tourguide.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.tourguide.dto.CloseAttractionsInfo;
 import com.openclassrooms.tourguide.dto.NearByAttraction;
+import com.openclassrooms.tourguide.dto.UserBatchResult;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.model.User;
 import com.openclassrooms.tourguide.model.UserReward;
 import gpsUtil.location.VisitedLocation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import tripPricer.Provider;
 
 import java.util.List;
@@ -21,6 +29,9 @@ public class TourGuideController {
 	@Autowired
 	TourGuideService tourGuideService;
 
+	@Autowired
+	ObjectMapper objectMapper;
+
     /** HTML request using GET method that returns greeting message
      *
      * @return a String message to welcome the user
@@ -40,7 +51,7 @@ public class TourGuideController {
     	return tourGuideService.getUserLocation(getUser(userName));
     }
 
-    /** HTML request using GET method that returns a CloseAttractionsInfo DTO containing a list of the five closest attractions.
+    /** HTML request using GET method that returns a CloseAttractionsInfo DTO containing a list of the closest attractions, five by default.
      *
      * @param userName string of a User's username
      * @return a Json string of the user's CloseAttractionsInfo
@@ -72,6 +83,66 @@ public class TourGuideController {
     	return tourGuideService.getTripDeals(getUser(userName));
     }
     
+    /** HTML request using POST method that returns the current or previous location of every user of the list.
+     * The users are located in parallel, a user who cannot be located does not fail the whole request.
+     *
+     * @param userNames Json list of the usernames
+     * @return a Json list giving, for each username, the user's VisitedLocation or the error that prevented getting it
+     */
+    @PostMapping("/batch/getLocation")
+    public List<UserBatchResult<VisitedLocation>> getLocations(@RequestBody List<String> userNames) throws InterruptedException {
+        return tourGuideService.getUserLocations(userNames);
+    }
+
+    /** HTML request using POST method that returns the closest attractions of every user of the list.
+     *
+     * @param userNames Json list of the usernames
+     * @return a Json list giving, for each username, the user's CloseAttractionsInfo or the error that prevented getting it
+     */
+    @PostMapping("/batch/getNearbyAttractions")
+    public List<UserBatchResult<CloseAttractionsInfo>> getNearbyAttractions(@RequestBody List<String> userNames) throws InterruptedException {
+        return tourGuideService.getNearByAttractions(userNames);
+    }
+
+    /** HTML request using POST method that returns the list of UserRewards of every user of the list.
+     *
+     * @param userNames Json list of the usernames
+     * @return a Json list giving, for each username, the user's UserRewards or the error that prevented getting them
+     */
+    @PostMapping("/batch/getRewards")
+    public List<UserBatchResult<List<UserReward>>> getRewards(@RequestBody List<String> userNames) {
+        return tourGuideService.getUserRewards(userNames);
+    }
+
+    /** HTML request using GET method that streams the last location of every user, as newline-delimited Json (one
+     * {"userName", "visitedLocation"} object per line), users never located being skipped.
+     * The users are read from the registry and serialized one at a time straight into the response, so that the memory
+     * used does not depend on the number of users.
+     *
+     * @return a stream of the users' last VisitedLocation, written as it is read
+     */
+    @GetMapping(value = "/streamLocations", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamLocations() {
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                // The servlet container closes the response once the body is written
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                for (User user : tourGuideService.getUserRegistry()) {
+                    VisitedLocation visitedLocation = user.getLastVisitedLocation();
+                    if (visitedLocation == null) {
+                        continue;
+                    }
+                    generator.writeStartObject();
+                    generator.writeStringField("userName", user.getUserName());
+                    generator.writeFieldName("visitedLocation");
+                    generator.writeObject(visitedLocation);
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+    }
+
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
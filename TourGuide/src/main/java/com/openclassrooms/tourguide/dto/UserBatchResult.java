@@ -0,0 +1,45 @@
+package com.openclassrooms.tourguide.dto;
+
+/**
+ * Result of a batch request for one of its users: either the result for that user, or the error that prevented it.
+ *
+ * @param <T> type of the result
+ */
+public class UserBatchResult<T> {
+
+    private final String userName;
+
+    private final T result;
+
+    private final String error;
+
+    private UserBatchResult(String userName, T result, String error) {
+        this.userName = userName;
+        this.result = result;
+        this.error = error;
+    }
+
+    public static <T> UserBatchResult<T> success(String userName, T result) {
+        return new UserBatchResult<>(userName, result, null);
+    }
+
+    public static <T> UserBatchResult<T> failure(String userName, String error) {
+        return new UserBatchResult<>(userName, null, error);
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public T getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
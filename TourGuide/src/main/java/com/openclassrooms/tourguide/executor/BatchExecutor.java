@@ -0,0 +1,374 @@
+package com.openclassrooms.tourguide.executor;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared pool running the batch operations (location tracking, reward calculation) over many users.
+ * <p>
+ * The users of a batch are split into chunks of chunkSize users, each chunk being processed by a single task.
+ * Tasks wait in a bounded queue; once it is full, the BackpressurePolicy decides how new tasks are handled.
+ * Pool, queue and task counters are exposed to size the pool for the hardware.
+ * <p>
+ * In VIRTUAL execution mode, each item runs on its own virtual thread instead, a semaphore capping the number of items
+ * processed (hence of external calls made) at the same time. When the runtime does not support virtual threads,
+ * the executor falls back to the PLATFORM mode.
+ */
+public class BatchExecutor {
+	private Logger logger = LoggerFactory.getLogger(BatchExecutor.class);
+
+	private static final int DEFAULT_POOL_SIZE = 200;
+	private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+	private static final int DEFAULT_CHUNK_SIZE = 20;
+	private static final int DEFAULT_MAX_CONCURRENT_CALLS = 1000;
+	private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+	private static volatile BatchExecutor defaultBatchExecutor;
+
+	/**
+	 * What happens to a task submitted while the queue is full.
+	 */
+	public enum BackpressurePolicy {
+		/** the submitting thread runs the task itself */
+		CALLER_RUNS,
+		/** the submitting thread waits for room in the queue */
+		BLOCK,
+		/** the task is rejected */
+		ABORT
+	}
+
+	/**
+	 * How the items of a batch are run.
+	 */
+	public enum ExecutionMode {
+		/** chunks of items run on the platform thread pool */
+		PLATFORM,
+		/** one virtual thread per item, when supported by the runtime */
+		VIRTUAL
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final ExecutionMode executionMode;
+	private final ExecutorService virtualThreadExecutor;
+	private final Semaphore concurrentCallPermits;
+	private final int chunkSize;
+	private final LongAdder processedItemCount = new LongAdder();
+	private final LongAdder failedItemCount = new LongAdder();
+
+	/**
+	 * @param corePoolSize number of threads kept while tasks are submitted
+	 * @param maximumPoolSize number of threads the pool grows up to once the queue is full
+	 * @param queueCapacity maximum number of tasks waiting for a thread
+	 * @param backpressurePolicy handling of the tasks submitted while the queue is full
+	 * @param chunkSize number of items processed by a single task
+	 */
+	public BatchExecutor(int corePoolSize, int maximumPoolSize, int queueCapacity, BackpressurePolicy backpressurePolicy, int chunkSize) {
+		this(corePoolSize, maximumPoolSize, queueCapacity, backpressurePolicy, chunkSize, ExecutionMode.PLATFORM, DEFAULT_MAX_CONCURRENT_CALLS);
+	}
+
+	/**
+	 * @param corePoolSize number of threads kept while tasks are submitted
+	 * @param maximumPoolSize number of threads the pool grows up to once the queue is full
+	 * @param queueCapacity maximum number of tasks waiting for a thread
+	 * @param backpressurePolicy handling of the tasks submitted while the queue is full
+	 * @param chunkSize number of items processed by a single task
+	 * @param executionMode requested execution mode, PLATFORM being used when VIRTUAL is not supported
+	 * @param maxConcurrentCalls in VIRTUAL mode, maximum number of items processed at the same time
+	 */
+	public BatchExecutor(int corePoolSize, int maximumPoolSize, int queueCapacity, BackpressurePolicy backpressurePolicy, int chunkSize,
+						 ExecutionMode executionMode, int maxConcurrentCalls) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		if (maxConcurrentCalls <= 0) {
+			throw new IllegalArgumentException("Maximum concurrent calls must be positive: " + maxConcurrentCalls);
+		}
+		this.chunkSize = chunkSize;
+		this.executor = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new BatchThreadFactory(), rejectedExecutionHandler(backpressurePolicy));
+		this.executor.allowCoreThreadTimeOut(true);
+		this.concurrentCallPermits = new Semaphore(maxConcurrentCalls);
+
+		ExecutorService virtualThreadPerTaskExecutor = (executionMode == ExecutionMode.VIRTUAL) ? newVirtualThreadPerTaskExecutor() : null;
+		if (executionMode == ExecutionMode.VIRTUAL && virtualThreadPerTaskExecutor == null) {
+			logger.warn("Virtual threads are not supported by Java " + Runtime.version().feature() + ", falling back to the platform thread pool.");
+		}
+		this.virtualThreadExecutor = virtualThreadPerTaskExecutor;
+		this.executionMode = (virtualThreadPerTaskExecutor != null) ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
+	}
+
+	/**
+	 * Returns the executor shared by the services built outside of the Spring context.
+	 *
+	 * @return the default BatchExecutor
+	 */
+	public static BatchExecutor getDefault() {
+		if (defaultBatchExecutor == null) {
+			synchronized (BatchExecutor.class) {
+				if (defaultBatchExecutor == null) {
+					defaultBatchExecutor = new BatchExecutor(DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY,
+							BackpressurePolicy.CALLER_RUNS, DEFAULT_CHUNK_SIZE);
+				}
+			}
+		}
+		return defaultBatchExecutor;
+	}
+
+	/**
+	 * Applies the task to every item, chunkSize items per pool task, and waits until all of them are processed.
+	 * A failure on an item is logged and does not prevent the other items from being processed.
+	 *
+	 * @param items the items to process
+	 * @param task the processing of a single item
+	 * @param <T> type of the items
+	 * @throws InterruptedException if interrupted while waiting for the items to be processed
+	 */
+	public <T> void forEach(List<T> items, BatchTask<? super T> task) throws InterruptedException {
+		forEach(items, chunkSize, task);
+	}
+
+	/**
+	 * Same as forEach(items, task), with a chunk size specific to this batch.
+	 * A chunk size of 1 runs every item in its own pool task, for batches of few but long items.
+	 *
+	 * @param items the items to process
+	 * @param chunkSize number of items processed by a single task, ignored in VIRTUAL execution mode
+	 * @param task the processing of a single item
+	 * @param <T> type of the items
+	 * @throws InterruptedException if interrupted while waiting for the items to be processed
+	 */
+	public <T> void forEach(List<T> items, int chunkSize, BatchTask<? super T> task) throws InterruptedException {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		if (executionMode == ExecutionMode.VIRTUAL) {
+			forEachOnVirtualThreads(items, task);
+			return;
+		}
+		int chunkCount = (items.size() + chunkSize - 1) / chunkSize;
+		CountDownLatch remainingChunks = new CountDownLatch(chunkCount);
+		for (int chunkStart = 0; chunkStart < items.size(); chunkStart += chunkSize) {
+			List<T> chunk = items.subList(chunkStart, Math.min(chunkStart + chunkSize, items.size()));
+			try {
+				executor.execute(() -> {
+					try {
+						processChunk(chunk, task);
+					} finally {
+						remainingChunks.countDown();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				failedItemCount.add(chunk.size());
+				remainingChunks.countDown();
+				logger.debug("Batch chunk rejected: " + e.getMessage());
+			}
+		}
+		remainingChunks.await();
+		logger.debug("Batch of " + items.size() + " items processed. Pool size: " + executor.getPoolSize()
+				+ ", active tasks: " + getActiveCount() + ", queued tasks: " + getQueuedTaskCount()
+				+ ", completed tasks: " + getCompletedTaskCount());
+	}
+
+	private <T> void forEachOnVirtualThreads(List<T> items, BatchTask<? super T> task) throws InterruptedException {
+		CountDownLatch remainingItems = new CountDownLatch(items.size());
+		for (T item : items) {
+			try {
+				virtualThreadExecutor.execute(() -> {
+					try {
+						concurrentCallPermits.acquire();
+						try {
+							processItem(item, task);
+						} finally {
+							concurrentCallPermits.release();
+						}
+					} catch (InterruptedException e) {
+						failedItemCount.increment();
+						logger.debug(e.getMessage());
+					} finally {
+						remainingItems.countDown();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				failedItemCount.increment();
+				remainingItems.countDown();
+				logger.debug("Batch item rejected: " + e.getMessage());
+			}
+		}
+		remainingItems.await();
+		logger.debug("Batch of " + items.size() + " items processed on virtual threads.");
+	}
+
+	private <T> void processChunk(List<T> chunk, BatchTask<? super T> task) {
+		for (T item : chunk) {
+			if (!processItem(item, task)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return false if the thread was interrupted while processing the item, true otherwise
+	 */
+	private <T> boolean processItem(T item, BatchTask<? super T> task) {
+		try {
+			task.process(item);
+			processedItemCount.increment();
+		} catch (InterruptedException e) {
+			failedItemCount.increment();
+			logger.debug(e.getMessage());
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (Exception e) {
+			failedItemCount.increment();
+			logger.debug(e.getMessage());
+		}
+		return true;
+	}
+
+	/**
+	 * @return the approximate number of threads running a task
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * @return the number of tasks waiting for a thread
+	 */
+	public int getQueuedTaskCount() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return the approximate number of tasks (chunks) completed since the creation of the executor
+	 */
+	public long getCompletedTaskCount() {
+		return executor.getCompletedTaskCount();
+	}
+
+	public int getPoolSize() {
+		return executor.getPoolSize();
+	}
+
+	public int getLargestPoolSize() {
+		return executor.getLargestPoolSize();
+	}
+
+	public long getProcessedItemCount() {
+		return processedItemCount.sum();
+	}
+
+	public long getFailedItemCount() {
+		return failedItemCount.sum();
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return the execution mode in use, PLATFORM when VIRTUAL was requested but is not supported
+	 */
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * @return true if the runtime can run the VIRTUAL execution mode
+	 */
+	public static boolean isVirtualThreadSupported() {
+		ExecutorService virtualThreadPerTaskExecutor = newVirtualThreadPerTaskExecutor();
+		if (virtualThreadPerTaskExecutor == null) {
+			return false;
+		}
+		virtualThreadPerTaskExecutor.shutdown();
+		return true;
+	}
+
+	/**
+	 * Stops accepting batches, the ones already submitted are completed.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+		if (virtualThreadExecutor != null) {
+			virtualThreadExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * Looks Executors.newVirtualThreadPerTaskExecutor() up by reflection, as it only exists from Java 21 onwards.
+	 *
+	 * @return a new virtual thread per task executor, or null when the runtime does not support it
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factoryMethod.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static RejectedExecutionHandler rejectedExecutionHandler(BackpressurePolicy backpressurePolicy) {
+		switch (backpressurePolicy) {
+			case BLOCK:
+				return (runnable, threadPoolExecutor) -> {
+					if (threadPoolExecutor.isShutdown()) {
+						throw new RejectedExecutionException("Batch executor is shut down");
+					}
+					try {
+						threadPoolExecutor.getQueue().put(runnable);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException("Interrupted while waiting for room in the queue", e);
+					}
+				};
+			case ABORT:
+				return new ThreadPoolExecutor.AbortPolicy();
+			case CALLER_RUNS:
+			default:
+				// Unlike ThreadPoolExecutor.CallerRunsPolicy, the task is rejected rather than silently dropped once shut down
+				return (runnable, threadPoolExecutor) -> {
+					if (threadPoolExecutor.isShutdown()) {
+						throw new RejectedExecutionException("Batch executor is shut down");
+					}
+					runnable.run();
+				};
+		}
+	}
+
+	/**
+	 * Processing of a single item of a batch.
+	 *
+	 * @param <T> type of the item
+	 */
+	@FunctionalInterface
+	public interface BatchTask<T> {
+		void process(T item) throws Exception;
+	}
+
+	private static class BatchThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "batch-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * Asynchronous access to RewardCentral.
+ * <p>
+ * Each reward points lookup runs on a dedicated pool, so that a caller can issue many lookups at once and only wait
+ * for the slowest one. The number of lookups in flight is capped: once the cap is reached, callers wait for a lookup
+ * to complete before submitting a new one.
+ */
+public class RewardCentralGateway {
+	private Logger logger = LoggerFactory.getLogger(RewardCentralGateway.class);
+	private static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 512;
+	private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+	private final RewardCentral rewardCentral;
+	private final int maxInFlightRequests;
+	private final Semaphore inFlightPermits;
+	private final ThreadPoolExecutor executor;
+
+	public RewardCentralGateway(RewardCentral rewardCentral) {
+		this(rewardCentral, DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+	}
+
+	/**
+	 * @param rewardCentral the RewardCentral client
+	 * @param maxInFlightRequests maximum number of concurrent reward points lookups
+	 */
+	public RewardCentralGateway(RewardCentral rewardCentral, int maxInFlightRequests) {
+		if (maxInFlightRequests <= 0) {
+			throw new IllegalArgumentException("Maximum in-flight requests must be positive: " + maxInFlightRequests);
+		}
+		this.rewardCentral = rewardCentral;
+		this.maxInFlightRequests = maxInFlightRequests;
+		this.inFlightPermits = new Semaphore(maxInFlightRequests);
+		this.executor = new ThreadPoolExecutor(maxInFlightRequests, maxInFlightRequests,
+				IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new GatewayThreadFactory());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Requests the reward points of the user for the attraction without blocking on RewardCentral.
+	 * The call only blocks while the maximum number of in-flight lookups is reached.
+	 *
+	 * @param attractionId identifier of the attraction
+	 * @param userId identifier of the user
+	 * @return a future completed with the reward points
+	 */
+	public CompletableFuture<Integer> getAttractionRewardPoints(UUID attractionId, UUID userId) {
+		try {
+			inFlightPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(e);
+		}
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					return rewardCentral.getAttractionRewardPoints(attractionId, userId);
+				} finally {
+					inFlightPermits.release();
+				}
+			}, executor);
+		} catch (RejectedExecutionException e) {
+			inFlightPermits.release();
+			logger.debug("Reward points lookup rejected: " + e.getMessage());
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	public int getMaxInFlightRequests() {
+		return maxInFlightRequests;
+	}
+
+	/**
+	 * @return the number of lookups submitted and not completed yet
+	 */
+	public int getInFlightRequestCount() {
+		return maxInFlightRequests - inFlightPermits.availablePermits();
+	}
+
+	public long getCompletedRequestCount() {
+		return executor.getCompletedTaskCount();
+	}
+
+	/**
+	 * Stops accepting lookups, the ones in flight are completed.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static class GatewayThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "reward-central-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
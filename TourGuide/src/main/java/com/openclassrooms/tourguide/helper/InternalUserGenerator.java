@@ -0,0 +1,154 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserFactory;
+import com.openclassrooms.tourguide.registry.UserRegistry;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Generates the internal test users, each with a short random location history, and adds them to a UserRegistry.
+ * <p>
+ * Users are generated by a parallel stream. Each user draws its identifier, locations and times from its own
+ * SplittableRandom, seeded by mixing the generator seed and the user index, so that the same seed gives the same users
+ * whatever the number of threads and the order they run in. Generation can run in the background, the registry being
+ * filled while the application already serves requests.
+ */
+public class InternalUserGenerator {
+	private Logger logger = LoggerFactory.getLogger(InternalUserGenerator.class);
+	private static final int LOCATION_HISTORY_SIZE = 3;
+	private static final double MAX_LATITUDE = 85.05112878;
+	private static final int MAX_DAYS_AGO = 30;
+	// Increment of the seed between two users, the golden ratio gamma of SplittableRandom. Mixed before seeding the
+	// generator of a user: SplittableRandom steps by that same gamma, so the unmixed seeds of two consecutive users
+	// would give the same draws shifted by one
+	private static final long SEED_INCREMENT = 0x9e3779b97f4a7c15L;
+
+	private final long seed;
+	private final boolean fixedSeed;
+	private final boolean inBackground;
+	private final UserFactory userFactory;
+
+	/**
+	 * Creates a generator with a random seed, generating the users before returning.
+	 */
+	public InternalUserGenerator() {
+		this(null, false);
+	}
+
+	/**
+	 * @param seed seed of the generated users, null for a random one
+	 * @param inBackground true to fill the registry in the background, false to fill it before returning
+	 */
+	public InternalUserGenerator(Long seed, boolean inBackground) {
+		this(seed, inBackground, new UserFactory());
+	}
+
+	/**
+	 * @param seed seed of the generated users, null for a random one
+	 * @param inBackground true to fill the registry in the background, false to fill it before returning
+	 * @param userFactory creates the generated users
+	 */
+	public InternalUserGenerator(Long seed, boolean inBackground, UserFactory userFactory) {
+		this.seed = (seed != null) ? seed : ThreadLocalRandom.current().nextLong();
+		this.fixedSeed = (seed != null);
+		this.inBackground = inBackground;
+		this.userFactory = userFactory;
+	}
+
+	/**
+	 * Generates userNumber users named internalUser0 to internalUser(userNumber - 1) and adds them to the registry.
+	 *
+	 * @param userRegistry registry the users are added to
+	 * @param userNumber number of users to generate
+	 * @return completed once every user is in the registry, already completed when not generating in the background
+	 */
+	public CompletableFuture<Void> generate(UserRegistry userRegistry, int userNumber) {
+		if (!inBackground) {
+			generateUsers(userRegistry, userNumber);
+			return CompletableFuture.completedFuture(null);
+		}
+		logger.debug("Generating " + userNumber + " internal test users in the background.");
+		return CompletableFuture.runAsync(() -> generateUsers(userRegistry, userNumber))
+				.whenComplete((result, e) -> {
+					if (e != null) {
+						logger.error("Generation of the internal test users failed: " + e.getMessage(), e);
+					}
+				});
+	}
+
+	/**
+	 * @param index index of the user, which gives its name and its random values
+	 * @return the generated user, with its location history
+	 */
+	public User generateUser(int index) {
+		return generateUser(index, LocalDateTime.now());
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return true if the seed was given, so that the users of another run have the same identifiers, false if it was drawn
+	 */
+	public boolean hasFixedSeed() {
+		return fixedSeed;
+	}
+
+	public boolean isInBackground() {
+		return inBackground;
+	}
+
+	private void generateUsers(UserRegistry userRegistry, int userNumber) {
+		long start = System.nanoTime();
+		LocalDateTime now = LocalDateTime.now();
+		IntStream.range(0, userNumber).parallel().forEach(i -> userRegistry.add(generateUser(i, now)));
+		logger.info("Created " + userNumber + " internal test users in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms with seed " + seed + ".");
+	}
+
+	private User generateUser(int index, LocalDateTime now) {
+		SplittableRandom random = new SplittableRandom(mix64(seed + (index + 1) * SEED_INCREMENT));
+		String userName = "internalUser" + index;
+		User user = userFactory.createUser(randomUUID(random), userName, "000", userName + "@tourGuide.com");
+		for (int i = 0; i < LOCATION_HISTORY_SIZE; i++) {
+			Location location = new Location(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180));
+			Date time = Date.from(now.minusDays(random.nextInt(MAX_DAYS_AGO)).toInstant(ZoneOffset.UTC));
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, time));
+		}
+		return user;
+	}
+
+	/**
+	 * @return the 64-bit finalizer of SplitMix64 applied to the value, whose output bits all depend on every input bit
+	 */
+	private static long mix64(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	/**
+	 * @return a version 4 UUID drawn from the random generator
+	 */
+	private static UUID randomUUID(SplittableRandom random) {
+		long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long leastSignificantBits = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L;
+		return new UUID(mostSignificantBits, leastSignificantBits);
+	}
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.tourguide.model;
+
+import java.util.List;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Location history of a user, as kept at a given time: the summaries of the compacted locations, from the oldest to
+ * the most recent, and the locations kept as they are, in visiting order.
+ */
+public record LocationHistory(List<LocationSummary> summaries, List<VisitedLocation> rawLocations) {
+}
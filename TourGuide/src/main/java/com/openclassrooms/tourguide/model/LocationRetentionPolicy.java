@@ -0,0 +1,59 @@
+package com.openclassrooms.tourguide.model;
+
+/**
+ * Bounds the location history kept for a user.
+ * <p>
+ * The last maxRawLocations visited locations are kept as they are. Older locations are compacted into hourly summaries,
+ * at most maxHourlySummaries of them, and older hourly summaries into daily summaries, at most maxDailySummaries of them,
+ * the oldest daily summaries being dropped. A location is only compacted once it has been evaluated for rewards.
+ */
+public class LocationRetentionPolicy {
+
+	private static final LocationRetentionPolicy UNBOUNDED = new LocationRetentionPolicy(Integer.MAX_VALUE, 0, 0);
+	private static final LocationRetentionPolicy DEFAULT = new LocationRetentionPolicy(500, 7 * 24, 365);
+
+	private final int maxRawLocations;
+	private final int maxHourlySummaries;
+	private final int maxDailySummaries;
+
+	/**
+	 * @param maxRawLocations number of most recent locations kept as they are
+	 * @param maxHourlySummaries number of hourly summaries kept
+	 * @param maxDailySummaries number of daily summaries kept
+	 */
+	public LocationRetentionPolicy(int maxRawLocations, int maxHourlySummaries, int maxDailySummaries) {
+		if (maxRawLocations <= 0 || maxHourlySummaries < 0 || maxDailySummaries < 0) {
+			throw new IllegalArgumentException("Invalid location retention: " + maxRawLocations + " raw locations, "
+					+ maxHourlySummaries + " hourly summaries, " + maxDailySummaries + " daily summaries");
+		}
+		this.maxRawLocations = maxRawLocations;
+		this.maxHourlySummaries = maxHourlySummaries;
+		this.maxDailySummaries = maxDailySummaries;
+	}
+
+	/**
+	 * @return a policy keeping every location as it is
+	 */
+	public static LocationRetentionPolicy unbounded() {
+		return UNBOUNDED;
+	}
+
+	/**
+	 * @return the policy of the users created without an explicit one
+	 */
+	public static LocationRetentionPolicy getDefault() {
+		return DEFAULT;
+	}
+
+	public int getMaxRawLocations() {
+		return maxRawLocations;
+	}
+
+	public int getMaxHourlySummaries() {
+		return maxHourlySummaries;
+	}
+
+	public int getMaxDailySummaries() {
+		return maxDailySummaries;
+	}
+}
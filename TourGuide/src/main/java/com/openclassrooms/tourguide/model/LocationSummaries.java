@@ -0,0 +1,89 @@
+package com.openclassrooms.tourguide.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Downsampled location history of a user: hourly summaries of the compacted locations, and daily summaries of the
+ * hourly summaries that no longer fit. Consecutive locations of the same period are merged into the same summary.
+ * Not thread-safe, guarded by the owning User.
+ */
+class LocationSummaries {
+
+	private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	private final Deque<LocationSummary> dailySummaries = new ArrayDeque<>();
+	private final Deque<LocationSummary> hourlySummaries = new ArrayDeque<>();
+
+	/**
+	 * Adds a compacted location to the hourly summaries, moving the oldest ones to the daily summaries when needed.
+	 */
+	void add(VisitedLocation visitedLocation, LocationRetentionPolicy locationRetentionPolicy) {
+		long time = visitedLocation.timeVisited.getTime();
+		merge(hourlySummaries, new LocationSummary(visitedLocation, LocationSummary.Period.HOUR,
+				Math.floorDiv(time, HOUR_MILLIS) * HOUR_MILLIS, 1));
+		while (hourlySummaries.size() > locationRetentionPolicy.getMaxHourlySummaries()) {
+			LocationSummary hourlySummary = hourlySummaries.removeFirst();
+			merge(dailySummaries, new LocationSummary(hourlySummary.visitedLocation, LocationSummary.Period.DAY,
+					Math.floorDiv(hourlySummary.periodStart, DAY_MILLIS) * DAY_MILLIS, hourlySummary.getLocationCount()));
+		}
+		while (dailySummaries.size() > locationRetentionPolicy.getMaxDailySummaries()) {
+			dailySummaries.removeFirst();
+		}
+	}
+
+	/**
+	 * Adds a summary restored from a previous state, after the summaries of the same period.
+	 */
+	void restore(LocationSummary summary) {
+		(summary.period == LocationSummary.Period.DAY ? dailySummaries : hourlySummaries).addLast(summary);
+	}
+
+	/**
+	 * @return the summaries, daily ones first, from the oldest to the most recent
+	 */
+	List<LocationSummary> getSummaries() {
+		List<LocationSummary> summaries = new ArrayList<>(dailySummaries.size() + hourlySummaries.size());
+		summaries.addAll(dailySummaries);
+		summaries.addAll(hourlySummaries);
+		return summaries;
+	}
+
+	/**
+	 * @return the locations representing the summaries, daily ones first
+	 */
+	List<VisitedLocation> getVisitedLocations() {
+		List<VisitedLocation> visitedLocations = new ArrayList<>(size());
+		dailySummaries.forEach(summary -> visitedLocations.add(summary.visitedLocation));
+		hourlySummaries.forEach(summary -> visitedLocations.add(summary.visitedLocation));
+		return visitedLocations;
+	}
+
+	int size() {
+		return dailySummaries.size() + hourlySummaries.size();
+	}
+
+	boolean isEmpty() {
+		return size() == 0;
+	}
+
+	void clear() {
+		dailySummaries.clear();
+		hourlySummaries.clear();
+	}
+
+	private static void merge(Deque<LocationSummary> summaries, LocationSummary summary) {
+		LocationSummary lastSummary = summaries.peekLast();
+		if (lastSummary != null && lastSummary.periodStart == summary.periodStart) {
+			lastSummary.addLocations(summary.getLocationCount());
+		} else {
+			summaries.addLast(summary);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.openclassrooms.tourguide.model;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Locations visited by a user during one period (an hour or a day), represented by the first of them.
+ */
+public class LocationSummary {
+
+	/**
+	 * Length of the period summarized.
+	 */
+	public enum Period {
+		HOUR,
+		DAY
+	}
+
+	public final VisitedLocation visitedLocation;
+	public final Period period;
+	public final long periodStart;
+	private int locationCount;
+
+	/**
+	 * @param visitedLocation first location of the period
+	 * @param period length of the period
+	 * @param periodStart start of the period, in milliseconds since the epoch
+	 * @param locationCount number of locations summarized
+	 */
+	public LocationSummary(VisitedLocation visitedLocation, Period period, long periodStart, int locationCount) {
+		this.visitedLocation = visitedLocation;
+		this.period = period;
+		this.periodStart = periodStart;
+		this.locationCount = locationCount;
+	}
+
+	void addLocations(int count) {
+		locationCount += count;
+	}
+
+	public int getLocationCount() {
+		return locationCount;
+	}
+}
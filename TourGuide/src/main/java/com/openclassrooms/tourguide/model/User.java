@@ -1,9 +1,14 @@
 package com.openclassrooms.tourguide.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
@@ -14,15 +19,44 @@ public class User {
 	private String phoneNumber;
 	private String emailAddress;
 	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new ArrayList<>();
-	private List<UserReward> userRewards = new ArrayList<>();
+	private final VisitedLocationLog visitedLocations;
+	// Locations compacted out of visitedLocations, guarded by this
+	private final LocationSummaries locationSummaries = new LocationSummaries();
+	private final LocationRetentionPolicy locationRetentionPolicy;
+	private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+	// Identifiers of the rewarded attractions, kept alongside the rewards for constant-time duplicate checks
+	private final Set<UUID> rewardedAttractionIds = ConcurrentHashMap.newKeySet();
+	// Sum of the points of the rewards, kept up to date as they are added
+	private final AtomicInteger cumulativeRewardPoints = new AtomicInteger();
 	private UserPreferences userPreferences = new UserPreferences();
 	private List<Provider> tripDeals = new ArrayList<>();
+	// Sequence of the first visited location not evaluated for rewards yet, and the version of the reward rules used
+	private long rewardEvaluatedSequence = 0;
+	private long rewardRulesVersion = -1;
+	private long rewardEvaluationResetCount = 0;
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+		this(userId, userName, phoneNumber, emailAddress, LocationRetentionPolicy.getDefault());
+	}
+
+	/**
+	 * @param locationRetentionPolicy bounds the location history kept for the user
+	 */
+	public User(UUID userId, String userName, String phoneNumber, String emailAddress, LocationRetentionPolicy locationRetentionPolicy) {
+		this(userId, userName, phoneNumber, emailAddress, locationRetentionPolicy, VisitedLocationLog.DEFAULT_STORAGE);
+	}
+
+	/**
+	 * @param locationRetentionPolicy bounds the location history kept for the user
+	 * @param locationHistoryStorage how the visited locations of the user are stored
+	 */
+	public User(UUID userId, String userName, String phoneNumber, String emailAddress, LocationRetentionPolicy locationRetentionPolicy,
+				VisitedLocationLog.Storage locationHistoryStorage) {
 		this.userId = userId;
 		this.userName = userName;
 		this.phoneNumber = phoneNumber;
 		this.emailAddress = emailAddress;
+		this.locationRetentionPolicy = locationRetentionPolicy;
+		this.visitedLocations = new VisitedLocationLog(userId, locationHistoryStorage);
 	}
 	
 	public UUID getUserId() {
@@ -58,34 +92,198 @@ public class User {
 	}
 	
 	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+		visitedLocations.append(visitedLocation);
+		if (visitedLocations.size() > locationRetentionPolicy.getMaxRawLocations()) {
+			compactVisitedLocations();
+		}
 	}
 	
+	/**
+	 * Returns the location history: the locations representing the summaries of the compacted locations, followed by
+	 * the locations kept as they are.
+	 *
+	 * @return a read-only view of the locations visited so far, not affected by later visits
+	 */
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		List<VisitedLocation> summarizedLocations;
+		List<VisitedLocation> rawLocations;
+		synchronized (this) {
+			if (locationSummaries.isEmpty()) {
+				return visitedLocations.view();
+			}
+			summarizedLocations = locationSummaries.getVisitedLocations();
+			rawLocations = visitedLocations.view();
+		}
+		summarizedLocations.addAll(rawLocations);
+		return Collections.unmodifiableList(summarizedLocations);
+	}
+
+	/**
+	 * @return the hourly and daily summaries of the compacted locations, from the oldest to the most recent
+	 */
+	public synchronized List<LocationSummary> getLocationSummaries() {
+		return locationSummaries.getSummaries();
+	}
+
+	/**
+	 * @return the summaries and the locations kept as they are, taken atomically with regard to compaction
+	 */
+	public synchronized LocationHistory getLocationHistory() {
+		return new LocationHistory(locationSummaries.getSummaries(), visitedLocations.view());
+	}
+
+	/**
+	 * Replaces the location history by one restored from a previous state. The restored locations are considered
+	 * not evaluated for rewards, so that the next reward evaluation covers them.
+	 *
+	 * @param locationHistory the history to restore
+	 */
+	public synchronized void restoreLocationHistory(LocationHistory locationHistory) {
+		clearVisitedLocations();
+		locationHistory.summaries().forEach(locationSummaries::restore);
+		locationHistory.rawLocations().forEach(visitedLocations::append);
+		resetRewardEvaluation();
+	}
+
+	public LocationRetentionPolicy getLocationRetentionPolicy() {
+		return locationRetentionPolicy;
 	}
 	
-	public void clearVisitedLocations() {
+	public synchronized void clearVisitedLocations() {
+		rewardEvaluatedSequence = visitedLocations.getEndSequence();
 		visitedLocations.clear();
+		locationSummaries.clear();
 	}
-	
-	public void addUserReward(UserReward userReward) {
-		boolean isAttractionAlreadyRewarded = false;
-		for (UserReward userRewardIterable : userRewards) {
-			if(userRewardIterable.attraction.attractionName.equals(userReward.attraction.attractionName)){
-				isAttractionAlreadyRewarded = true;
-				break;
-			}
+
+	/**
+	 * Returns the visited locations that have not been evaluated for rewards yet and marks them as evaluated.
+	 * When the reward rules changed since the previous evaluation, the whole location history is returned instead,
+	 * the compacted locations being represented by their summaries.
+	 *
+	 * @param rewardRulesVersion version of the reward rules the locations are about to be evaluated with
+	 * @return a read-only view of the locations to evaluate, in visiting order
+	 */
+	public synchronized List<VisitedLocation> pollLocationsToEvaluateForRewards(long rewardRulesVersion) {
+		RewardEvaluation rewardEvaluation = peekLocationsToEvaluateForRewards(rewardRulesVersion);
+		commitRewardEvaluation(rewardEvaluation);
+		return rewardEvaluation.visitedLocations();
+	}
+
+	/**
+	 * Returns the visited locations that have not been evaluated for rewards yet, without marking them as evaluated.
+	 * When the reward rules changed since the previous evaluation, the whole location history is returned instead,
+	 * the compacted locations being represented by their summaries.
+	 * <p>
+	 * The locations are only marked as evaluated, and may only be compacted, once the evaluation is committed: an
+	 * evaluation that fails before, a reward points lookup failing for instance, leaves them to the next evaluation.
+	 *
+	 * @param rewardRulesVersion version of the reward rules the locations are about to be evaluated with
+	 * @return the locations to evaluate, to commit with commitRewardEvaluation() once their rewards are added
+	 */
+	public synchronized RewardEvaluation peekLocationsToEvaluateForRewards(long rewardRulesVersion) {
+		// Locations are only discarded under the lock of the user, the head sequence cannot change meanwhile
+		long firstSequenceToEvaluate = (this.rewardRulesVersion == rewardRulesVersion)
+				? Math.max(rewardEvaluatedSequence, visitedLocations.getHeadSequence())
+				: visitedLocations.getHeadSequence();
+		List<VisitedLocation> rawLocationsToEvaluate = visitedLocations.viewFrom(firstSequenceToEvaluate);
+		List<VisitedLocation> locationsToEvaluate = rawLocationsToEvaluate;
+		if (this.rewardRulesVersion != rewardRulesVersion && !locationSummaries.isEmpty()) {
+			List<VisitedLocation> allLocations = locationSummaries.getVisitedLocations();
+			allLocations.addAll(rawLocationsToEvaluate);
+			locationsToEvaluate = Collections.unmodifiableList(allLocations);
+		}
+		return new RewardEvaluation(locationsToEvaluate, firstSequenceToEvaluate + rawLocationsToEvaluate.size(),
+				rewardRulesVersion, rewardEvaluationResetCount);
+	}
+
+	/**
+	 * Marks the locations of the evaluation as evaluated, then compacts the oldest ones if needed. The evaluation is
+	 * ignored if the reward evaluation was reset since it was peeked, the history it covered having been replaced.
+	 *
+	 * @param rewardEvaluation an evaluation whose rewards were all added
+	 */
+	public synchronized void commitRewardEvaluation(RewardEvaluation rewardEvaluation) {
+		if (rewardEvaluation.resetCount() != rewardEvaluationResetCount) {
+			return;
+		}
+		if (this.rewardRulesVersion == rewardEvaluation.rewardRulesVersion()) {
+			// A concurrent evaluation of the same user may have committed a longer range meanwhile
+			rewardEvaluatedSequence = Math.max(rewardEvaluatedSequence, rewardEvaluation.endSequence());
+		} else {
+			rewardEvaluatedSequence = rewardEvaluation.endSequence();
+			this.rewardRulesVersion = rewardEvaluation.rewardRulesVersion();
 		}
-		if(!isAttractionAlreadyRewarded)
-		{
+		compactVisitedLocations();
+	}
+
+	/**
+	 * Forgets which visited locations were already evaluated, so that the next reward evaluation covers the whole history.
+	 */
+	public synchronized void resetRewardEvaluation() {
+		rewardEvaluatedSequence = 0;
+		rewardRulesVersion = -1;
+		rewardEvaluationResetCount++;
+	}
+
+	/**
+	 * Visited locations of a user to evaluate for rewards, peeked but not marked as evaluated yet.
+	 *
+	 * @param visitedLocations the locations to evaluate, in visiting order
+	 * @param endSequence sequence following the last raw location to evaluate
+	 * @param rewardRulesVersion version of the reward rules the locations are evaluated with
+	 * @param resetCount number of resets of the reward evaluation of the user when the locations were peeked
+	 */
+	public record RewardEvaluation(List<VisitedLocation> visitedLocations, long endSequence, long rewardRulesVersion, long resetCount) {
+	}
+
+	/**
+	 * Moves the oldest visited locations past maxRawLocations into the summaries. Locations not evaluated for rewards
+	 * yet are never compacted, so that compaction cannot lose a reward.
+	 */
+	private synchronized void compactVisitedLocations() {
+		long compactionEndSequence = Math.min(visitedLocations.getEndSequence() - locationRetentionPolicy.getMaxRawLocations(),
+				rewardEvaluatedSequence);
+		if (compactionEndSequence <= visitedLocations.getHeadSequence()) {
+			return;
+		}
+		List<VisitedLocation> rawLocations = visitedLocations.view();
+		int compactedCount = (int) (compactionEndSequence - visitedLocations.getHeadSequence());
+		for (VisitedLocation visitedLocation : rawLocations.subList(0, compactedCount)) {
+			locationSummaries.add(visitedLocation, locationRetentionPolicy);
+		}
+		visitedLocations.discardBefore(compactionEndSequence);
+	}
+
+	/**
+	 * Adds the reward unless its attraction was already rewarded.
+	 * The check and the insertion are atomic, so concurrent callers cannot reward the same attraction twice.
+	 *
+	 * @param userReward the reward to add
+	 * @return true if the reward was added, false if its attraction was already rewarded
+	 */
+	public boolean addUserReward(UserReward userReward) {
+		if (rewardedAttractionIds.add(userReward.attraction.attractionId)) {
 			userRewards.add(userReward);
+			cumulativeRewardPoints.addAndGet(userReward.getRewardPoints());
+			return true;
 		}
+		return false;
+	}
+
+	public boolean isAttractionRewarded(UUID attractionId) {
+		return rewardedAttractionIds.contains(attractionId);
 	}
 	
 	public List<UserReward> getUserRewards() {
 		return userRewards;
 	}
+
+	/**
+	 * @return the sum of the points of the rewards, as they were when added, without iterating over the rewards
+	 */
+	public int getCumulativeRewardPoints() {
+		return cumulativeRewardPoints.get();
+	}
 	
 	public UserPreferences getUserPreferences() {
 		return userPreferences;
@@ -95,8 +293,11 @@ public class User {
 		this.userPreferences = userPreferences;
 	}
 
+	/**
+	 * @return the last visited location, null if the user has not been located yet
+	 */
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		return visitedLocations.getLast();
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
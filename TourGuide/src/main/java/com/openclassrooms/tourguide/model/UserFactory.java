@@ -0,0 +1,42 @@
+package com.openclassrooms.tourguide.model;
+
+import java.util.UUID;
+
+/**
+ * Creates the users of the application with the location retention policy and the location history storage they are
+ * configured with, so that every way of creating a user, generation or restoration of a snapshot, keeps their location
+ * history the same way.
+ */
+public class UserFactory {
+
+	private final LocationRetentionPolicy locationRetentionPolicy;
+	private final VisitedLocationLog.Storage locationHistoryStorage;
+
+	/**
+	 * Creates a factory of users with the default location retention policy and storage.
+	 */
+	public UserFactory() {
+		this(LocationRetentionPolicy.getDefault(), VisitedLocationLog.DEFAULT_STORAGE);
+	}
+
+	/**
+	 * @param locationRetentionPolicy bounds the location history kept for the users created
+	 * @param locationHistoryStorage how the visited locations of the users created are stored
+	 */
+	public UserFactory(LocationRetentionPolicy locationRetentionPolicy, VisitedLocationLog.Storage locationHistoryStorage) {
+		this.locationRetentionPolicy = locationRetentionPolicy;
+		this.locationHistoryStorage = locationHistoryStorage;
+	}
+
+	public User createUser(UUID userId, String userName, String phoneNumber, String emailAddress) {
+		return new User(userId, userName, phoneNumber, emailAddress, locationRetentionPolicy, locationHistoryStorage);
+	}
+
+	public LocationRetentionPolicy getLocationRetentionPolicy() {
+		return locationRetentionPolicy;
+	}
+
+	public VisitedLocationLog.Storage getLocationHistoryStorage() {
+		return locationHistoryStorage;
+	}
+}
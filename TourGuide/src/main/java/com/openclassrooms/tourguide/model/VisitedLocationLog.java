@@ -0,0 +1,317 @@
+package com.openclassrooms.tourguide.model;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Log of the locations visited by a user, readable while it is written to.
+ * <p>
+ * Every location gets a sequence number, incremented on each append and never reused, even after the oldest locations
+ * are discarded or the log is cleared. The locations are stored in fixed-size chunks referenced by a directory, and the
+ * end sequence is published through a volatile field once a location is stored. Appending never moves the stored
+ * locations: a full directory is replaced by a larger copy referencing the same chunks. Discarding the oldest locations
+ * replaces the directory by a copy without the chunks no longer used, so that the log behaves as a ring of chunks.
+ * <p>
+ * Readers never lock: a view reads the directory and the end sequence, and retries if the directory was replaced
+ * meanwhile, which gives it a consistent range of the log without copying it. Writers are serialized among themselves only.
+ * <p>
+ * A chunk either references the VisitedLocation objects, or packs the latitude, longitude and visit time of each
+ * location in 24 bytes of a ByteBuffer, on or off the heap. Packed locations are materialized as new VisitedLocation
+ * objects, of the user the log belongs to, when they are read. The buffer of a packed chunk starts with room for a few
+ * locations and doubles as they are appended, so that the short histories do not reserve a whole chunk.
+ * <p>
+ * The locations are referenced as they are by default: packing saves memory on long histories only, and allocates a
+ * new VisitedLocation on every read.
+ */
+public class VisitedLocationLog {
+
+	/**
+	 * How the locations of a log are stored.
+	 */
+	public enum Storage {
+		/** references to the VisitedLocation objects */
+		OBJECTS,
+		/** latitude, longitude and visit time packed in heap byte buffers */
+		PACKED_HEAP,
+		/** latitude, longitude and visit time packed in direct byte buffers, outside of the heap */
+		PACKED_OFF_HEAP
+	}
+
+	private static final int CHUNK_SIZE = 32;
+	private static final int INITIAL_DIRECTORY_SIZE = 4;
+	private static final int PACKED_LOCATION_BYTES = 3 * Long.BYTES;
+	private static final int INITIAL_PACKED_CHUNK_SIZE = 4;
+	// Storage of the logs of the users created without an explicit one
+	public static final Storage DEFAULT_STORAGE = Storage.OBJECTS;
+
+	private final UUID userId;
+	private final Storage storage;
+	// Replaced as a whole whenever the directory changes, so that readers see its three fields consistently
+	private volatile Segment segment = new Segment(new Chunk[INITIAL_DIRECTORY_SIZE], 0, 0);
+	private volatile long endSequence = 0;
+
+	/**
+	 * Creates a log referencing the VisitedLocation objects appended.
+	 */
+	public VisitedLocationLog() {
+		this(null, Storage.OBJECTS);
+	}
+
+	/**
+	 * @param userId user the packed locations are materialized for
+	 * @param storage how the locations are stored
+	 */
+	public VisitedLocationLog(UUID userId, Storage storage) {
+		this.userId = userId;
+		this.storage = storage;
+	}
+
+	public Storage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Adds the location at the end of the log.
+	 *
+	 * @param visitedLocation the location to add
+	 */
+	public synchronized void append(VisitedLocation visitedLocation) {
+		long sequence = endSequence;
+		Segment currentSegment = segment;
+		int chunkIndex = (int) ((sequence - currentSegment.firstChunkSequence) / CHUNK_SIZE);
+		if (chunkIndex == currentSegment.chunks.length) {
+			currentSegment = new Segment(Arrays.copyOf(currentSegment.chunks, currentSegment.chunks.length * 2),
+					currentSegment.firstChunkSequence, currentSegment.headSequence);
+			segment = currentSegment;
+		}
+		if (currentSegment.chunks[chunkIndex] == null) {
+			currentSegment.chunks[chunkIndex] = newChunk();
+		}
+		currentSegment.chunks[chunkIndex].set((int) ((sequence - currentSegment.firstChunkSequence) % CHUNK_SIZE), visitedLocation);
+		// Publishes the location: a reader seeing the new end sequence sees the location and its chunk
+		endSequence = sequence + 1;
+	}
+
+	/**
+	 * Discards the locations whose sequence is lower than the given one. Views taken before keep their content.
+	 *
+	 * @param sequence sequence of the first location to keep
+	 */
+	public synchronized void discardBefore(long sequence) {
+		Segment currentSegment = segment;
+		long newHeadSequence = Math.min(Math.max(sequence, currentSegment.headSequence), endSequence);
+		if (newHeadSequence == currentSegment.headSequence) {
+			return;
+		}
+		int firstKeptChunk = (int) ((newHeadSequence - currentSegment.firstChunkSequence) / CHUNK_SIZE);
+		if (firstKeptChunk == 0) {
+			// Still within the first chunk: the directory is shared, only the head moves
+			segment = new Segment(currentSegment.chunks, currentSegment.firstChunkSequence, newHeadSequence);
+			return;
+		}
+		Chunk[] keptChunks = Arrays.copyOfRange(currentSegment.chunks, firstKeptChunk,
+				firstKeptChunk + Math.max(currentSegment.chunks.length - firstKeptChunk, INITIAL_DIRECTORY_SIZE));
+		segment = new Segment(keptChunks, currentSegment.firstChunkSequence + (long) firstKeptChunk * CHUNK_SIZE, newHeadSequence);
+	}
+
+	/**
+	 * Discards every location. Views taken before keep their content.
+	 */
+	public synchronized void clear() {
+		long sequence = endSequence;
+		segment = new Segment(new Chunk[INITIAL_DIRECTORY_SIZE], sequence, sequence);
+	}
+
+	/**
+	 * @return the number of locations kept
+	 */
+	public int size() {
+		return view().size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return the sequence of the oldest location kept, equal to the end sequence when the log is empty
+	 */
+	public long getHeadSequence() {
+		return segment.headSequence;
+	}
+
+	/**
+	 * @return the sequence the next appended location will get
+	 */
+	public long getEndSequence() {
+		return endSequence;
+	}
+
+	/**
+	 * @return the last location of the log, null if it is empty
+	 */
+	public VisitedLocation getLast() {
+		List<VisitedLocation> view = view();
+		return view.isEmpty() ? null : view.get(view.size() - 1);
+	}
+
+	/**
+	 * Returns a read-only view of the locations kept when it is taken. Later changes of the log do not affect it.
+	 *
+	 * @return the locations of the log, in visiting order
+	 */
+	public List<VisitedLocation> view() {
+		return viewFrom(0);
+	}
+
+	/**
+	 * @param fromSequence sequence of the first location of the view, older locations being excluded anyway
+	 * @return a read-only view of the locations kept from fromSequence when it is taken
+	 */
+	public List<VisitedLocation> viewFrom(long fromSequence) {
+		while (true) {
+			Segment viewSegment = segment;
+			long viewEndSequence = endSequence;
+			// The segment is replaced before the end sequence grows past its directory, and when locations are discarded
+			if (viewSegment == segment) {
+				long viewStartSequence = Math.min(Math.max(fromSequence, viewSegment.headSequence), viewEndSequence);
+				return new View(viewSegment, viewStartSequence, viewEndSequence);
+			}
+		}
+	}
+
+	/**
+	 * @return the bytes of the buffers of the packed chunks kept, zero when the locations are referenced as they are
+	 */
+	public long getPackedCapacityBytes() {
+		long capacityBytes = 0;
+		for (Chunk chunk : segment.chunks) {
+			if (chunk instanceof PackedChunk) {
+				capacityBytes += ((PackedChunk) chunk).buffer.capacity();
+			}
+		}
+		return capacityBytes;
+	}
+
+	private Chunk newChunk() {
+		switch (storage) {
+			case PACKED_HEAP:
+				return new PackedChunk(false, userId);
+			case PACKED_OFF_HEAP:
+				return new PackedChunk(true, userId);
+			default:
+				return new ObjectChunk();
+		}
+	}
+
+	/**
+	 * Fixed-size block of locations. A slot is written once, before the location is published by the end sequence.
+	 */
+	private interface Chunk {
+		void set(int slot, VisitedLocation visitedLocation);
+
+		VisitedLocation get(int slot);
+	}
+
+	private static class ObjectChunk implements Chunk {
+		private final VisitedLocation[] visitedLocations = new VisitedLocation[CHUNK_SIZE];
+
+		@Override
+		public void set(int slot, VisitedLocation visitedLocation) {
+			visitedLocations[slot] = visitedLocation;
+		}
+
+		@Override
+		public VisitedLocation get(int slot) {
+			return visitedLocations[slot];
+		}
+	}
+
+	private static class PackedChunk implements Chunk {
+		// Only absolute accesses are used, which leave the buffer position alone and can be made by concurrent readers.
+		// Replaced by a larger copy when full: a reader still holding the previous buffer finds the locations published
+		// before the copy in it, and the locations published after it are only written to the new buffer, published first.
+		private volatile ByteBuffer buffer;
+		private final boolean direct;
+		private final UUID userId;
+
+		private PackedChunk(boolean direct, UUID userId) {
+			this.direct = direct;
+			this.userId = userId;
+			this.buffer = allocate(INITIAL_PACKED_CHUNK_SIZE * PACKED_LOCATION_BYTES);
+		}
+
+		private ByteBuffer allocate(int capacity) {
+			return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		}
+
+		@Override
+		public void set(int slot, VisitedLocation visitedLocation) {
+			int offset = slot * PACKED_LOCATION_BYTES;
+			ByteBuffer buffer = this.buffer;
+			if (offset == buffer.capacity()) {
+				ByteBuffer grownBuffer = allocate(Math.min(buffer.capacity() * 2, CHUNK_SIZE * PACKED_LOCATION_BYTES));
+				grownBuffer.put(0, buffer, 0, buffer.capacity());
+				this.buffer = grownBuffer;
+				buffer = grownBuffer;
+			}
+			buffer.putDouble(offset, visitedLocation.location.latitude);
+			buffer.putDouble(offset + Double.BYTES, visitedLocation.location.longitude);
+			buffer.putLong(offset + 2 * Double.BYTES, visitedLocation.timeVisited.getTime());
+		}
+
+		@Override
+		public VisitedLocation get(int slot) {
+			int offset = slot * PACKED_LOCATION_BYTES;
+			ByteBuffer buffer = this.buffer;
+			Location location = new Location(buffer.getDouble(offset), buffer.getDouble(offset + Double.BYTES));
+			return new VisitedLocation(userId, location, new Date(buffer.getLong(offset + 2 * Double.BYTES)));
+		}
+	}
+
+	private static class Segment {
+		private final Chunk[] chunks;
+		private final long firstChunkSequence;
+		private final long headSequence;
+
+		private Segment(Chunk[] chunks, long firstChunkSequence, long headSequence) {
+			this.chunks = chunks;
+			this.firstChunkSequence = firstChunkSequence;
+			this.headSequence = headSequence;
+		}
+	}
+
+	private static class View extends AbstractList<VisitedLocation> implements RandomAccess {
+		private final Segment segment;
+		private final long startSequence;
+		private final int size;
+
+		private View(Segment segment, long startSequence, long endSequence) {
+			this.segment = segment;
+			this.startSequence = startSequence;
+			this.size = (int) (endSequence - startSequence);
+		}
+
+		@Override
+		public VisitedLocation get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+			}
+			long offset = startSequence + index - segment.firstChunkSequence;
+			return segment.chunks[(int) (offset / CHUNK_SIZE)].get((int) (offset % CHUNK_SIZE));
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,469 @@
+package com.openclassrooms.tourguide.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.registry.UserRegistry;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Append-only journal of the locations tracked and the rewards granted, so that the events occurring between two
+ * snapshots survive a restart.
+ * <p>
+ * Appending only encodes the event and queues it: a flusher thread writes every queued event with a single gathering
+ * write on a FileChannel, then forces it to disk once, every flushInterval. Callers needing durability wait for the
+ * returned future, completed once their event is on disk, so that many events share each fsync (group commit) and the
+ * tracker never waits for the disk. Events appended while the journal is not open, before open() or after close(), are
+ * dropped, their futures failing, so that they never pile up in memory.
+ * <p>
+ * The journal is split into segment files named after an increasing segment number. A new segment is started once the
+ * current one exceeds maxSegmentBytes, on every open() and on rotate(), so that the segments older than a snapshot can
+ * be deleted. Each record is its length, the CRC32C of its content, then its content: a torn record at the end of a
+ * segment, left by a crash, ends the replay of that segment.
+ */
+public class EventJournal {
+	private Logger logger = LoggerFactory.getLogger(EventJournal.class);
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final byte LOCATION_EVENT = 1;
+	private static final byte REWARD_EVENT = 2;
+	// Length and CRC32C of a record
+	private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+	private static final int NULL_LENGTH = -1;
+
+	private final Path directory;
+	private final long maxSegmentBytes;
+	private final Duration flushInterval;
+	private final boolean enabled;
+	private final Object pendingLock = new Object();
+	private final Object channelLock = new Object();
+	private List<ByteBuffer> pendingRecords = new ArrayList<>();
+	private CompletableFuture<Void> pendingFlush = new CompletableFuture<>();
+	// Whether appended events are queued, only changed under the pending lock
+	private boolean accepting = false;
+	private final AtomicLong appendedEventCount = new AtomicLong();
+	private final AtomicLong droppedEventCount = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+	private ScheduledExecutorService flusher;
+	private FileChannel channel;
+	private long segmentNumber = -1;
+
+	/**
+	 * @param directory directory of the segment files
+	 * @param maxSegmentBytes size past which a new segment is started
+	 * @param flushInterval time between two writes of the queued events
+	 * @param enabled false to never write nor replay a journal, the appended events being dropped
+	 */
+	public EventJournal(Path directory, long maxSegmentBytes, Duration flushInterval, boolean enabled) {
+		if (enabled && (maxSegmentBytes <= 0 || flushInterval.isZero() || flushInterval.isNegative())) {
+			throw new IllegalArgumentException("Segment size and flush interval must be positive: " + maxSegmentBytes
+					+ " bytes, " + flushInterval);
+		}
+		this.directory = directory;
+		this.maxSegmentBytes = maxSegmentBytes;
+		this.flushInterval = flushInterval;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return a journal dropping every event
+	 */
+	public static EventJournal disabled() {
+		return new EventJournal(null, 0, null, false);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts a new segment after the existing ones and the flusher thread. Does nothing when disabled.
+	 *
+	 * @throws IOException if the segment cannot be created
+	 */
+	public void open() throws IOException {
+		if (!enabled) {
+			return;
+		}
+		synchronized (channelLock) {
+			if (channel != null) {
+				return;
+			}
+			Files.createDirectories(directory);
+			List<Long> segmentNumbers = listSegmentNumbers();
+			openSegment(segmentNumbers.isEmpty() ? 0 : segmentNumbers.get(segmentNumbers.size() - 1) + 1);
+			synchronized (pendingLock) {
+				accepting = true;
+			}
+		}
+		flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "event-journal-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(() -> {
+			try {
+				flush();
+			} catch (IOException | RuntimeException e) {
+				logger.error("Event journal flush failed: " + e.getMessage(), e);
+			}
+		}, flushInterval.toNanos(), flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Queues a tracked location.
+	 *
+	 * @return completed once the event is on disk, failed if the journal is not open
+	 */
+	public CompletableFuture<Void> appendLocation(User user, VisitedLocation visitedLocation) {
+		if (!enabled) {
+			return CompletableFuture.completedFuture(null);
+		}
+		ByteBuffer content = ByteBuffer.allocate(1 + 2 * Long.BYTES + 3 * Long.BYTES);
+		content.put(LOCATION_EVENT);
+		putUserId(content, user.getUserId());
+		putVisitedLocation(content, visitedLocation);
+		return append(content);
+	}
+
+	/**
+	 * Queues a granted reward.
+	 *
+	 * @return completed once the event is on disk, failed if the journal is not open
+	 */
+	public CompletableFuture<Void> appendReward(User user, UserReward userReward) {
+		if (!enabled) {
+			return CompletableFuture.completedFuture(null);
+		}
+		byte[][] strings = { bytes(userReward.attraction.attractionName), bytes(userReward.attraction.city),
+				bytes(userReward.attraction.state) };
+		int size = 1 + 2 * Long.BYTES + 2 * Double.BYTES + 3 * Long.BYTES + Integer.BYTES;
+		for (byte[] string : strings) {
+			size += Integer.BYTES + (string != null ? string.length : 0);
+		}
+		ByteBuffer content = ByteBuffer.allocate(size);
+		content.put(REWARD_EVENT);
+		putUserId(content, user.getUserId());
+		for (byte[] string : strings) {
+			putString(content, string);
+		}
+		content.putDouble(userReward.attraction.latitude).putDouble(userReward.attraction.longitude);
+		putVisitedLocation(content, userReward.visitedLocation);
+		content.putInt(userReward.getRewardPoints());
+		return append(content);
+	}
+
+	/**
+	 * Writes the queued events and forces them to disk, starting a new segment if the current one is full.
+	 *
+	 * @throws IOException if the events cannot be written, their futures being completed exceptionally
+	 */
+	public void flush() throws IOException {
+		synchronized (channelLock) {
+			List<ByteBuffer> records;
+			CompletableFuture<Void> flushed;
+			synchronized (pendingLock) {
+				if (channel == null || pendingRecords.isEmpty()) {
+					return;
+				}
+				records = pendingRecords;
+				flushed = pendingFlush;
+				pendingRecords = new ArrayList<>();
+				pendingFlush = new CompletableFuture<>();
+			}
+			try {
+				ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+				long remaining = records.stream().mapToLong(ByteBuffer::remaining).sum();
+				while (remaining > 0) {
+					remaining -= channel.write(buffers);
+				}
+				channel.force(false);
+				flushCount.incrementAndGet();
+				if (channel.size() >= maxSegmentBytes) {
+					openSegment(segmentNumber + 1);
+				}
+			} catch (IOException | RuntimeException e) {
+				flushed.completeExceptionally(e);
+				throw e;
+			}
+			flushed.complete(null);
+		}
+	}
+
+	/**
+	 * Flushes the queued events and starts a new segment.
+	 *
+	 * @return the number of the new segment, every event appended before the call being in the previous segments
+	 * @throws IOException if the events cannot be written or the segment cannot be created
+	 */
+	public long rotate() throws IOException {
+		synchronized (channelLock) {
+			flush();
+			if (channel != null) {
+				openSegment(segmentNumber + 1);
+			}
+			return segmentNumber;
+		}
+	}
+
+	/**
+	 * Deletes the segments older than the given one, once their events are saved elsewhere, by a snapshot.
+	 *
+	 * @param segmentNumber number of the first segment to keep
+	 * @throws IOException if a segment cannot be deleted
+	 */
+	public void deleteSegmentsBefore(long segmentNumber) throws IOException {
+		if (!enabled) {
+			return;
+		}
+		for (long number : listSegmentNumbers()) {
+			if (number < segmentNumber) {
+				Files.deleteIfExists(segmentPath(number));
+			}
+		}
+	}
+
+	/**
+	 * Applies the events of the segments written before the last open() to the users of the registry. Locations not
+	 * more recent than the last known location of their user, and rewards of already rewarded attractions, are
+	 * skipped, so that replaying the events already saved by a snapshot changes nothing. Events of unknown users are
+	 * skipped.
+	 *
+	 * @param userRegistry the users the events are applied to
+	 * @param attractionResolver gives the current attraction of the given name, null when it is not known
+	 * @return the number of events applied
+	 * @throws IOException if a segment cannot be read
+	 */
+	public int replay(UserRegistry userRegistry, Function<String, Attraction> attractionResolver) throws IOException {
+		if (!enabled || !Files.isDirectory(directory)) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		long firstLiveSegment;
+		synchronized (channelLock) {
+			firstLiveSegment = (channel != null) ? segmentNumber : Long.MAX_VALUE;
+		}
+		int appliedEventCount = 0;
+		int recordCount = 0;
+		for (long number : listSegmentNumbers()) {
+			if (number >= firstLiveSegment) {
+				break;
+			}
+			try (FileChannel segmentChannel = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+				MappedByteBuffer segment = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+				while (segment.remaining() >= RECORD_HEADER_BYTES) {
+					int length = segment.getInt();
+					int checksum = segment.getInt();
+					if (length <= 0 || length > segment.remaining() || checksum != crc(segment.slice(segment.position(), length))) {
+						logger.warn("Torn or corrupted record in journal segment " + number + " at byte "
+								+ (segment.position() - RECORD_HEADER_BYTES) + ", rest of the segment skipped.");
+						break;
+					}
+					ByteBuffer content = segment.slice(segment.position(), length);
+					segment.position(segment.position() + length);
+					recordCount++;
+					if (apply(content, userRegistry, attractionResolver)) {
+						appliedEventCount++;
+					}
+				}
+			}
+		}
+		logger.info("Replayed " + appliedEventCount + " of " + recordCount + " journal events in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+		return appliedEventCount;
+	}
+
+	/**
+	 * Stops the flusher thread, then flushes the queued events and closes the current segment.
+	 *
+	 * @throws IOException if the events cannot be written
+	 */
+	public void close() throws IOException {
+		if (flusher != null) {
+			flusher.shutdown();
+		}
+		synchronized (pendingLock) {
+			// The events queued so far are written below, the ones appended from now on are dropped
+			accepting = false;
+		}
+		synchronized (channelLock) {
+			flush();
+			if (channel != null) {
+				channel.close();
+				channel = null;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of events appended
+	 */
+	public long getAppendedEventCount() {
+		return appendedEventCount.get();
+	}
+
+	/**
+	 * @return the number of events dropped because they were appended while the journal was not open
+	 */
+	public long getDroppedEventCount() {
+		return droppedEventCount.get();
+	}
+
+	/**
+	 * @return the number of group commits, each writing and forcing every event queued since the previous one
+	 */
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+
+	/**
+	 * @return the number of the current segment, -1 when not open
+	 */
+	public long getSegmentNumber() {
+		synchronized (channelLock) {
+			return segmentNumber;
+		}
+	}
+
+	private CompletableFuture<Void> append(ByteBuffer content) {
+		content.flip();
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+		header.putInt(content.remaining()).putInt(crc(content.duplicate())).flip();
+		synchronized (pendingLock) {
+			if (!accepting) {
+				droppedEventCount.incrementAndGet();
+				return CompletableFuture.failedFuture(new IllegalStateException("Event journal not open"));
+			}
+			appendedEventCount.incrementAndGet();
+			pendingRecords.add(header);
+			pendingRecords.add(content);
+			return pendingFlush;
+		}
+	}
+
+	private boolean apply(ByteBuffer content, UserRegistry userRegistry, Function<String, Attraction> attractionResolver) {
+		byte type = content.get();
+		User user = userRegistry.getById(new UUID(content.getLong(), content.getLong()));
+		if (user == null) {
+			return false;
+		}
+		if (type == LOCATION_EVENT) {
+			VisitedLocation visitedLocation = getVisitedLocation(content, user.getUserId());
+			VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+			if (lastVisitedLocation != null && !visitedLocation.timeVisited.after(lastVisitedLocation.timeVisited)) {
+				return false;
+			}
+			user.addToVisitedLocations(visitedLocation);
+			return true;
+		}
+		if (type == REWARD_EVENT) {
+			String attractionName = getString(content);
+			String city = getString(content);
+			String state = getString(content);
+			double latitude = content.getDouble();
+			double longitude = content.getDouble();
+			Attraction attraction = attractionResolver.apply(attractionName);
+			if (attraction == null) {
+				attraction = new Attraction(attractionName, city, state, latitude, longitude);
+			}
+			VisitedLocation visitedLocation = getVisitedLocation(content, user.getUserId());
+			return user.addUserReward(new UserReward(visitedLocation, attraction, content.getInt()));
+		}
+		logger.warn("Unknown journal event type " + type + " skipped.");
+		return false;
+	}
+
+	private void openSegment(long number) throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+		channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		segmentNumber = number;
+		logger.debug("Event journal segment " + number + " started.");
+	}
+
+	private List<Long> listSegmentNumbers() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.map(file -> file.getFileName().toString())
+					.filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+					.map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	private Path segmentPath(long number) {
+		// Zero-padded so that the files also sort by name
+		return directory.resolve(SEGMENT_PREFIX + String.format("%020d", number) + SEGMENT_SUFFIX);
+	}
+
+	private static int crc(ByteBuffer content) {
+		CRC32C crc = new CRC32C();
+		crc.update(content);
+		return (int) crc.getValue();
+	}
+
+	private static byte[] bytes(String string) {
+		return (string != null) ? string.getBytes(StandardCharsets.UTF_8) : null;
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] string) {
+		if (string == null) {
+			buffer.putInt(NULL_LENGTH);
+		} else {
+			buffer.putInt(string.length).put(string);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		byte[] string = new byte[length];
+		buffer.get(string);
+		return new String(string, StandardCharsets.UTF_8);
+	}
+
+	private static void putUserId(ByteBuffer buffer, UUID userId) {
+		buffer.putLong(userId.getMostSignificantBits()).putLong(userId.getLeastSignificantBits());
+	}
+
+	private static void putVisitedLocation(ByteBuffer buffer, VisitedLocation visitedLocation) {
+		buffer.putDouble(visitedLocation.location.latitude).putDouble(visitedLocation.location.longitude)
+				.putLong(visitedLocation.timeVisited.getTime());
+	}
+
+	private static VisitedLocation getVisitedLocation(ByteBuffer buffer, UUID userId) {
+		Location location = new Location(buffer.getDouble(), buffer.getDouble());
+		return new VisitedLocation(userId, location, new Date(buffer.getLong()));
+	}
+}
@@ -0,0 +1,399 @@
+package com.openclassrooms.tourguide.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.model.LocationHistory;
+import com.openclassrooms.tourguide.model.LocationSummary;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserFactory;
+import com.openclassrooms.tourguide.model.UserPreferences;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.registry.UserRegistry;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Saves the users, their compacted location history and their rewards to a binary snapshot file, and loads them back.
+ * <p>
+ * The file starts with a header (magic number, format version, user count, CRC32C of the rest of the file) followed by
+ * the offset of every user record, then by the records themselves. The records are encoded in parallel, then written
+ * through a memory-mapped buffer into a temporary file which atomically replaces the previous snapshot, so that a crash
+ * while writing never leaves a partial snapshot behind. Loading maps the file and decodes the records in parallel,
+ * each one from its own slice of the mapped buffer.
+ * <p>
+ * The identifiers of the attractions change from one run to another: the attraction of a restored reward is resolved
+ * by its name, a new Attraction being created for the attractions no longer known. Restored locations are evaluated
+ * for rewards again, which only grants the rewards of the attractions not rewarded yet.
+ */
+public class UserSnapshotStore {
+	private Logger logger = LoggerFactory.getLogger(UserSnapshotStore.class);
+	private static final int MAGIC = 0x54475553;
+	private static final int FORMAT_VERSION = 1;
+	// Magic, format version, user count and CRC32C
+	private static final int HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+	private static final int PACKED_LOCATION_BYTES = 3 * Long.BYTES;
+	private static final int NULL_LENGTH = -1;
+	private static final long NULL_TIME = Long.MIN_VALUE;
+
+	private final Path snapshotPath;
+	private final Duration snapshotInterval;
+	private final boolean enabled;
+	private final UserFactory userFactory;
+	private ScheduledExecutorService scheduledExecutorService;
+
+	/**
+	 * @param snapshotPath file the snapshot is written to and loaded from
+	 * @param snapshotInterval time between two periodic snapshots
+	 * @param enabled false to never write nor load a snapshot
+	 */
+	public UserSnapshotStore(Path snapshotPath, Duration snapshotInterval, boolean enabled) {
+		this(snapshotPath, snapshotInterval, enabled, new UserFactory());
+	}
+
+	/**
+	 * @param snapshotPath file the snapshot is written to and loaded from
+	 * @param snapshotInterval time between two periodic snapshots
+	 * @param enabled false to never write nor load a snapshot
+	 * @param userFactory creates the restored users
+	 */
+	public UserSnapshotStore(Path snapshotPath, Duration snapshotInterval, boolean enabled, UserFactory userFactory) {
+		if (enabled && (snapshotInterval.isZero() || snapshotInterval.isNegative())) {
+			throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+		}
+		this.snapshotPath = snapshotPath;
+		this.snapshotInterval = snapshotInterval;
+		this.enabled = enabled;
+		this.userFactory = userFactory;
+	}
+
+	/**
+	 * @return a store that never writes nor loads a snapshot
+	 */
+	public static UserSnapshotStore disabled() {
+		return new UserSnapshotStore(null, null, false);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Path getSnapshotPath() {
+		return snapshotPath;
+	}
+
+	public Duration getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	/**
+	 * @return true if the store is enabled and a snapshot has been written
+	 */
+	public boolean exists() {
+		return enabled && Files.isRegularFile(snapshotPath);
+	}
+
+	/**
+	 * Writes a snapshot of the users of the registry, replacing the previous one.
+	 *
+	 * @param userRegistry the users to save
+	 * @return the number of users saved
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public int write(UserRegistry userRegistry) throws IOException {
+		long start = System.nanoTime();
+		List<byte[]> records = userRegistry.parallelStream().map(UserSnapshotStore::encode).collect(Collectors.toList());
+		long offset = HEADER_BYTES + (long) records.size() * Long.BYTES;
+		long[] offsets = new long[records.size()];
+		for (int i = 0; i < records.size(); i++) {
+			offsets[i] = offset;
+			offset += records.get(i).length;
+		}
+
+		if (offset > Integer.MAX_VALUE) {
+			throw new IOException("Snapshot too large to be mapped: " + offset + " bytes");
+		}
+
+		Path parent = snapshotPath.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temporaryPath = Files.createTempFile(parent, snapshotPath.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, offset);
+				buffer.position(HEADER_BYTES);
+				for (long recordOffset : offsets) {
+					buffer.putLong(recordOffset);
+				}
+				for (byte[] record : records) {
+					buffer.put(record);
+				}
+				CRC32C crc = new CRC32C();
+				crc.update(buffer.slice(HEADER_BYTES, buffer.capacity() - HEADER_BYTES));
+				buffer.putInt(0, MAGIC).putInt(Integer.BYTES, FORMAT_VERSION).putInt(2 * Integer.BYTES, records.size())
+						.putLong(3 * Integer.BYTES, crc.getValue());
+				buffer.force();
+			}
+			Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryPath);
+		}
+		logger.debug("Snapshot of " + records.size() + " users written to " + snapshotPath + " in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms (" + offset / 1024 + " KB).");
+		return records.size();
+	}
+
+	/**
+	 * Loads the users of the snapshot into the registry. The users are only added once every record is decoded, so that
+	 * a corrupted snapshot leaves the registry unchanged.
+	 *
+	 * @param userRegistry registry the users are added to
+	 * @param attractionResolver gives the current attraction of the given name, null when it is not known
+	 * @return the number of users loaded
+	 * @throws IOException if the snapshot cannot be read or is corrupted
+	 */
+	public int load(UserRegistry userRegistry, Function<String, Attraction> attractionResolver) throws IOException {
+		long start = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Invalid snapshot size: " + channel.size() + " bytes");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+				throw new IOException("Not a snapshot of format version " + FORMAT_VERSION + ": " + snapshotPath);
+			}
+			int userCount = buffer.getInt(2 * Integer.BYTES);
+			CRC32C crc = new CRC32C();
+			crc.update(buffer.slice(HEADER_BYTES, buffer.capacity() - HEADER_BYTES));
+			if (crc.getValue() != buffer.getLong(3 * Integer.BYTES)) {
+				throw new IOException("Corrupted snapshot, checksum mismatch: " + snapshotPath);
+			}
+
+			User[] users = new User[userCount];
+			try {
+				IntStream.range(0, userCount).parallel().forEach(i -> {
+					int recordStart = (int) buffer.getLong(HEADER_BYTES + i * Long.BYTES);
+					int recordEnd = (i + 1 < userCount) ? (int) buffer.getLong(HEADER_BYTES + (i + 1) * Long.BYTES) : buffer.capacity();
+					users[i] = decode(buffer.slice(recordStart, recordEnd - recordStart), attractionResolver);
+				});
+			} catch (RuntimeException e) {
+				throw new IOException("Invalid snapshot record: " + e.getMessage(), e);
+			}
+			for (User user : users) {
+				userRegistry.add(user);
+			}
+			logger.info("Loaded " + userCount + " users from the snapshot " + snapshotPath + " in "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+			return userCount;
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the registry, then deletes the journal segments whose events it contains. The journal is
+	 * rotated before the snapshot is taken, so that the events of the older segments are all in the snapshot.
+	 *
+	 * @param userRegistry the users to save
+	 * @param eventJournal journal of the events occurring between two snapshots
+	 * @return the number of users saved
+	 * @throws IOException if the snapshot cannot be written or the segments cannot be deleted
+	 */
+	public int checkpoint(UserRegistry userRegistry, EventJournal eventJournal) throws IOException {
+		long firstSegmentToKeep = eventJournal.rotate();
+		int userCount = write(userRegistry);
+		eventJournal.deleteSegmentsBefore(firstSegmentToKeep);
+		return userCount;
+	}
+
+	/**
+	 * Makes a checkpoint of the registry every snapshot interval, until stop() is called. Does nothing when disabled.
+	 *
+	 * @param userRegistry the users to save
+	 * @param eventJournal journal of the events occurring between two snapshots
+	 */
+	public synchronized void start(UserRegistry userRegistry, EventJournal eventJournal) {
+		if (!enabled || scheduledExecutorService != null) {
+			return;
+		}
+		scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "user-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduledExecutorService.scheduleWithFixedDelay(() -> {
+			// An exception escaping a periodic task would cancel all the following snapshots
+			try {
+				checkpoint(userRegistry, eventJournal);
+			} catch (IOException | RuntimeException e) {
+				logger.error("User snapshot failed: " + e.getMessage(), e);
+			}
+		}, snapshotInterval.toNanos(), snapshotInterval.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stops the periodic snapshots. A snapshot being written is completed.
+	 */
+	public synchronized void stop() {
+		if (scheduledExecutorService != null) {
+			scheduledExecutorService.shutdown();
+			scheduledExecutorService = null;
+		}
+	}
+
+	private static byte[] encode(User user) {
+		LocationHistory locationHistory = user.getLocationHistory();
+		// getUserRewards() is a live view: the rewards added meanwhile must not change the records sized below
+		List<UserReward> userRewards = List.copyOf(user.getUserRewards());
+		byte[][] strings = { bytes(user.getUserName()), bytes(user.getPhoneNumber()), bytes(user.getEmailAddress()) };
+		int size = 2 * Long.BYTES + Long.BYTES + 5 * Integer.BYTES + 3 * Integer.BYTES
+				+ locationHistory.summaries().size() * (1 + Long.BYTES + Integer.BYTES + PACKED_LOCATION_BYTES)
+				+ locationHistory.rawLocations().size() * PACKED_LOCATION_BYTES;
+		for (byte[] string : strings) {
+			size += stringSize(string);
+		}
+		List<byte[][]> rewardStrings = new ArrayList<>(userRewards.size());
+		for (UserReward userReward : userRewards) {
+			byte[][] attractionStrings = { bytes(userReward.attraction.attractionName), bytes(userReward.attraction.city),
+					bytes(userReward.attraction.state) };
+			rewardStrings.add(attractionStrings);
+			size += stringSize(attractionStrings[0]) + stringSize(attractionStrings[1]) + stringSize(attractionStrings[2])
+					+ 2 * Double.BYTES + PACKED_LOCATION_BYTES + Integer.BYTES;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putLong(user.getUserId().getMostSignificantBits()).putLong(user.getUserId().getLeastSignificantBits());
+		for (byte[] string : strings) {
+			putString(buffer, string);
+		}
+		Date latestLocationTimestamp = user.getLatestLocationTimestamp();
+		buffer.putLong(latestLocationTimestamp != null ? latestLocationTimestamp.getTime() : NULL_TIME);
+		UserPreferences userPreferences = user.getUserPreferences();
+		buffer.putInt(userPreferences.getAttractionProximity()).putInt(userPreferences.getTripDuration())
+				.putInt(userPreferences.getTicketQuantity()).putInt(userPreferences.getNumberOfAdults())
+				.putInt(userPreferences.getNumberOfChildren());
+
+		buffer.putInt(locationHistory.summaries().size());
+		for (LocationSummary summary : locationHistory.summaries()) {
+			buffer.put((byte) summary.period.ordinal()).putLong(summary.periodStart).putInt(summary.getLocationCount());
+			putVisitedLocation(buffer, summary.visitedLocation);
+		}
+		buffer.putInt(locationHistory.rawLocations().size());
+		for (VisitedLocation visitedLocation : locationHistory.rawLocations()) {
+			putVisitedLocation(buffer, visitedLocation);
+		}
+		buffer.putInt(userRewards.size());
+		for (int i = 0; i < userRewards.size(); i++) {
+			UserReward userReward = userRewards.get(i);
+			for (byte[] string : rewardStrings.get(i)) {
+				putString(buffer, string);
+			}
+			buffer.putDouble(userReward.attraction.latitude).putDouble(userReward.attraction.longitude);
+			putVisitedLocation(buffer, userReward.visitedLocation);
+			buffer.putInt(userReward.getRewardPoints());
+		}
+		return buffer.array();
+	}
+
+	private User decode(ByteBuffer buffer, Function<String, Attraction> attractionResolver) {
+		UUID userId = new UUID(buffer.getLong(), buffer.getLong());
+		User user = userFactory.createUser(userId, getString(buffer), getString(buffer), getString(buffer));
+		long latestLocationTime = buffer.getLong();
+		user.setLatestLocationTimestamp(latestLocationTime != NULL_TIME ? new Date(latestLocationTime) : null);
+		UserPreferences userPreferences = new UserPreferences();
+		userPreferences.setAttractionProximity(buffer.getInt());
+		userPreferences.setTripDuration(buffer.getInt());
+		userPreferences.setTicketQuantity(buffer.getInt());
+		userPreferences.setNumberOfAdults(buffer.getInt());
+		userPreferences.setNumberOfChildren(buffer.getInt());
+		user.setUserPreferences(userPreferences);
+
+		int summaryCount = buffer.getInt();
+		List<LocationSummary> summaries = new ArrayList<>(summaryCount);
+		for (int i = 0; i < summaryCount; i++) {
+			LocationSummary.Period period = LocationSummary.Period.values()[buffer.get()];
+			long periodStart = buffer.getLong();
+			int locationCount = buffer.getInt();
+			summaries.add(new LocationSummary(getVisitedLocation(buffer, userId), period, periodStart, locationCount));
+		}
+		int rawLocationCount = buffer.getInt();
+		List<VisitedLocation> rawLocations = new ArrayList<>(rawLocationCount);
+		for (int i = 0; i < rawLocationCount; i++) {
+			rawLocations.add(getVisitedLocation(buffer, userId));
+		}
+		user.restoreLocationHistory(new LocationHistory(summaries, rawLocations));
+
+		int rewardCount = buffer.getInt();
+		for (int i = 0; i < rewardCount; i++) {
+			String attractionName = getString(buffer);
+			String city = getString(buffer);
+			String state = getString(buffer);
+			double latitude = buffer.getDouble();
+			double longitude = buffer.getDouble();
+			Attraction attraction = attractionResolver.apply(attractionName);
+			if (attraction == null) {
+				attraction = new Attraction(attractionName, city, state, latitude, longitude);
+			}
+			VisitedLocation visitedLocation = getVisitedLocation(buffer, userId);
+			user.addUserReward(new UserReward(visitedLocation, attraction, buffer.getInt()));
+		}
+		return user;
+	}
+
+	private static byte[] bytes(String string) {
+		return (string != null) ? string.getBytes(StandardCharsets.UTF_8) : null;
+	}
+
+	private static int stringSize(byte[] string) {
+		return Integer.BYTES + (string != null ? string.length : 0);
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] string) {
+		if (string == null) {
+			buffer.putInt(NULL_LENGTH);
+		} else {
+			buffer.putInt(string.length).put(string);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		byte[] string = new byte[length];
+		buffer.get(string);
+		return new String(string, StandardCharsets.UTF_8);
+	}
+
+	private static void putVisitedLocation(ByteBuffer buffer, VisitedLocation visitedLocation) {
+		buffer.putDouble(visitedLocation.location.latitude).putDouble(visitedLocation.location.longitude)
+				.putLong(visitedLocation.timeVisited.getTime());
+	}
+
+	private static VisitedLocation getVisitedLocation(ByteBuffer buffer, UUID userId) {
+		Location location = new Location(buffer.getDouble(), buffer.getDouble());
+		return new VisitedLocation(userId, location, new Date(buffer.getLong()));
+	}
+}
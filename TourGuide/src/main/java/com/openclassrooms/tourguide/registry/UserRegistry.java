@@ -0,0 +1,107 @@
+package com.openclassrooms.tourguide.registry;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.openclassrooms.tourguide.model.User;
+
+/**
+ * Users of the application, indexed by userName and by userId.
+ * <p>
+ * Both indexes are concurrent maps: users can be added and looked up while other threads iterate over the registry.
+ * Iteration is weakly consistent, it never throws ConcurrentModificationException and walks the users present when it
+ * started, possibly along with some added since. It reads the map directly instead of copying the users, and its
+ * spliterator splits the map by bins, so that parallel sweeps over every user are partitioned without allocating a list.
+ */
+public class UserRegistry implements Iterable<User> {
+
+	private final Map<String, User> usersByName = new ConcurrentHashMap<>();
+	private final Map<UUID, User> usersById = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds the user unless a user with the same userName or the same userId is already registered.
+	 * <p>
+	 * The userId is claimed before the userName, and released if the userName is taken: a user found by name is
+	 * always found by id too, and an id is never indexed with two users.
+	 *
+	 * @param user the user to add
+	 * @return true if the user was added, false if its userName or its userId was already taken
+	 */
+	public boolean add(User user) {
+		if (usersById.putIfAbsent(user.getUserId(), user) != null) {
+			return false;
+		}
+		if (usersByName.putIfAbsent(user.getUserName(), user) != null) {
+			usersById.remove(user.getUserId(), user);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the user registered with the userName, null if there is none
+	 */
+	public User getByName(String userName) {
+		return usersByName.get(userName);
+	}
+
+	/**
+	 * @return the user registered with the userId, null if there is none
+	 */
+	public User getById(UUID userId) {
+		return usersById.get(userId);
+	}
+
+	/**
+	 * Removes the user registered with the userName.
+	 *
+	 * @return the removed user, null if there was none
+	 */
+	public User remove(String userName) {
+		User user = usersByName.remove(userName);
+		if (user != null) {
+			usersById.remove(user.getUserId(), user);
+		}
+		return user;
+	}
+
+	public int size() {
+		return usersByName.size();
+	}
+
+	public boolean isEmpty() {
+		return usersByName.isEmpty();
+	}
+
+	@Override
+	public Iterator<User> iterator() {
+		return usersByName.values().iterator();
+	}
+
+	@Override
+	public void forEach(Consumer<? super User> action) {
+		usersByName.values().forEach(action);
+	}
+
+	/**
+	 * @return a CONCURRENT, DISTINCT and NONNULL spliterator over the users, splitting the map by bins
+	 */
+	@Override
+	public Spliterator<User> spliterator() {
+		return usersByName.values().spliterator();
+	}
+
+	public Stream<User> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	public Stream<User> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+}
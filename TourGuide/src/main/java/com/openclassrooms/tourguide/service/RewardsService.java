@@ -1,94 +1,253 @@
 package com.openclassrooms.tourguide.service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.catalog.AttractionCatalog;
+import com.openclassrooms.tourguide.catalog.AttractionSnapshot;
+import com.openclassrooms.tourguide.executor.BatchExecutor;
+import com.openclassrooms.tourguide.gateway.RewardCentralGateway;
+import com.openclassrooms.tourguide.persistence.EventJournal;
 import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.User.RewardEvaluation;
 import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.spatial.AttractionIndex;
+import com.openclassrooms.tourguide.spatial.GeoDistance;
 
 
-@Service
 public class RewardsService {
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
-
 	// proximity in miles
     private static final int DEFAULT_PROXIMITY_BUFFER = 10;
-	private int proximityBuffer = DEFAULT_PROXIMITY_BUFFER;
+	private volatile int proximityBuffer = DEFAULT_PROXIMITY_BUFFER;
+	// Shared by every instance so that two RewardsService never hand out the same reward rules version
+	private static final AtomicLong REWARD_RULES_VERSION_SEQUENCE = new AtomicLong();
+	private volatile long rewardRulesVersion = REWARD_RULES_VERSION_SEQUENCE.incrementAndGet();
+	private volatile long rewardRulesCatalogVersion = -1;
 	private static final int ATTRACTION_PROXIMITY_RANGE = 200;
-	private final GpsUtil gpsUtil;
-	private final RewardCentral rewardsCentral;
+	private final AttractionCatalog attractionCatalog;
+	private final RewardCentralGateway rewardCentralGateway;
+	private final RewardPointsCache rewardPointsCache;
+	private final BatchExecutor batchExecutor;
+	private final EventJournal eventJournal;
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 
 	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-		this.gpsUtil = gpsUtil;
-		this.rewardsCentral = rewardCentral;
+		this(new AttractionCatalog(gpsUtil), new RewardCentralGateway(rewardCentral), new RewardPointsCache(), BatchExecutor.getDefault());
+	}
+
+	public RewardsService(AttractionCatalog attractionCatalog, RewardCentralGateway rewardCentralGateway, RewardPointsCache rewardPointsCache,
+						  BatchExecutor batchExecutor) {
+		this(attractionCatalog, rewardCentralGateway, rewardPointsCache, batchExecutor, EventJournal.disabled());
+	}
+
+	/**
+	 * @param eventJournal journal every granted reward is appended to
+	 */
+	public RewardsService(AttractionCatalog attractionCatalog, RewardCentralGateway rewardCentralGateway, RewardPointsCache rewardPointsCache,
+						  BatchExecutor batchExecutor, EventJournal eventJournal) {
+		this.attractionCatalog = attractionCatalog;
+		this.rewardCentralGateway = rewardCentralGateway;
+		this.rewardPointsCache = rewardPointsCache;
+		this.batchExecutor = batchExecutor;
+		this.eventJournal = eventJournal;
 	}
 	
 	public void setProximityBuffer(int proximityBuffer) {
 		this.proximityBuffer = proximityBuffer;
+		rewardRulesVersion = REWARD_RULES_VERSION_SEQUENCE.incrementAndGet();
 	}
 	
 	public void setDefaultProximityBuffer() {
-		proximityBuffer = DEFAULT_PROXIMITY_BUFFER;
+		setProximityBuffer(DEFAULT_PROXIMITY_BUFFER);
 	}
 	
 	public void calculateRewards(User user) {
-		//The CopyOnWriteArrayList of the visited locations of the user ensure that the concurrentModificationException will not occur.
-		List<VisitedLocation> userLocations = new CopyOnWriteArrayList<>(user.getVisitedLocations());
-		List<Attraction> attractions = gpsUtil.getAttractions();
+		AttractionSnapshot attractionSnapshot = attractionCatalog.getSnapshot();
+		//Only the locations visited since the previous evaluation are checked, unless the proximity buffer or the catalog changed meanwhile.
+		RewardEvaluation rewardEvaluation = user.peekLocationsToEvaluateForRewards(getRewardRulesVersion(attractionSnapshot));
 
-		searchForNewRewards(user, userLocations, attractions);
+		searchForNewRewards(user, rewardEvaluation.visitedLocations(), attractionSnapshot.getAttractionIndex());
+		// Only reached once every reward is added: a failed reward points lookup leaves the locations to the next evaluation
+		user.commitRewardEvaluation(rewardEvaluation);
 	}
 
-	private void searchForNewRewards(User user, List<VisitedLocation> userLocations, List<Attraction> attractions) {
+	/**
+	 * This method calculates the rewards of the user over the whole location history, whatever was evaluated before.
+	 *
+	 * @param user user of the app
+	 */
+	public void recalculateRewards(User user) {
+		user.resetRewardEvaluation();
+		calculateRewards(user);
+	}
+
+	/**
+	 * This method returns the version of the rules used to grant rewards.
+	 * It changes whenever the proximity buffer is set or a new version of the attraction catalog is used,
+	 * meaning every previously evaluated location must be evaluated again.
+	 *
+	 * @param attractionSnapshot attraction catalog snapshot the rewards are about to be calculated with
+	 * @return the current reward rules version
+	 */
+	private long getRewardRulesVersion(AttractionSnapshot attractionSnapshot) {
+		if (attractionSnapshot.getVersion() != rewardRulesCatalogVersion) {
+			synchronized (this) {
+				if (attractionSnapshot.getVersion() != rewardRulesCatalogVersion) {
+					rewardRulesVersion = REWARD_RULES_VERSION_SEQUENCE.incrementAndGet();
+					rewardRulesCatalogVersion = attractionSnapshot.getVersion();
+				}
+			}
+		}
+		return rewardRulesVersion;
+	}
+
+	private void searchForNewRewards(User user, List<VisitedLocation> userLocations, AttractionIndex attractionIndex) {
+		// The spatial index only returns the attractions close enough to the visited location.
+		List<List<Attraction>> nearbyAttractions = new ArrayList<>(userLocations.size());
 		for(VisitedLocation visitedLocation : userLocations) {
-			for(Attraction attraction : attractions) {
-				// For each attraction, the code checks if the user isn't already rewarded and close enough.
-				//    If both criteria are met, the User gets a new reward for that attraction
-				if(!isAttractionAlreadyRewarded(user, attraction) && (nearAttraction(visitedLocation, attraction))) {
-						user.addUserReward(new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)));
+			nearbyAttractions.add(attractionIndex.findWithin(visitedLocation.location, proximityBuffer));
+		}
+
+		for (CompletableFuture<UserReward> userReward : requestNewRewards(user, userLocations, nearbyAttractions)) {
+			addUserReward(user, userReward.join());
+		}
+	}
+
+	/**
+	 * Adds the reward to the user and appends it to the event journal, unless its attraction was already rewarded.
+	 */
+	private void addUserReward(User user, UserReward userReward) {
+		if (user.addUserReward(userReward)) {
+			eventJournal.appendReward(user, userReward);
+		}
+	}
+
+	/**
+	 * This method requests the reward points of every attraction the user is not rewarded for yet and visited close enough.
+	 * For each of them, the first location close enough is kept for the reward.
+	 *
+	 * @param user user of the app
+	 * @param userLocations the visited locations to evaluate
+	 * @param nearbyAttractions at the index of each visited location, the attractions close enough to it
+	 * @return the rewards to add to the user, once their reward points are known
+	 */
+	private List<CompletableFuture<UserReward>> requestNewRewards(User user, List<VisitedLocation> userLocations,
+																  List<List<Attraction>> nearbyAttractions) {
+		Map<Attraction, VisitedLocation> rewardableAttractions = new LinkedHashMap<>();
+		for (int i = 0; i < userLocations.size(); i++) {
+			for (Attraction attraction : nearbyAttractions.get(i)) {
+				if (!isAttractionAlreadyRewarded(user, attraction)) {
+					rewardableAttractions.putIfAbsent(attraction, userLocations.get(i));
 				}
 			}
 		}
+
+		// The reward points lookups of the user are all issued at once, so the user waits for one round trip instead of their sum
+		List<CompletableFuture<UserReward>> userRewards = new ArrayList<>(rewardableAttractions.size());
+		rewardableAttractions.forEach((attraction, visitedLocation) -> userRewards.add(
+				getRewardPointsAsync(attraction, user).thenApply(rewardPoints -> new UserReward(visitedLocation, attraction, rewardPoints))));
+		return userRewards;
+	}
+
+	/**
+	 * This method returns the spatial index of the current attraction catalog snapshot.
+	 * It allows proximity and nearest-attraction searches to only look at the attractions of the surrounding grid cells.
+	 *
+	 * @return the AttractionIndex of the current attractions
+	 */
+	public AttractionIndex getAttractionIndex() {
+		return attractionCatalog.getSnapshot().getAttractionIndex();
+	}
+
+	public EventJournal getEventJournal() {
+		return eventJournal;
+	}
+
+	public AttractionCatalog getAttractionCatalog() {
+		return attractionCatalog;
 	}
 
 	/**
 	 * This method receives a list of users and intends to calculate the rewards (see calculateRewards(User user)) for each of them.
-	 * For performance's sake, the ExecutorService class is used to optimize the process time.
-	 * A dynamic pool of threads is instantiated from the start and will grow as needed to achieve the method's role.
+	 * For performance's sake, the users are not evaluated one by one:
+	 * the locations to evaluate of all the users are gathered and joined with the attraction index in a single parallel pass
+	 * (see AttractionIndex.findWithinAll), then the reward points of each user are requested on the shared BatchExecutor,
+	 * and the rewards added once all of them are known.
 	 *
 	 * @param users the list of users whose rewards will be calculated
 	 * @author Denis Siveton
 	 * @version 1.0.0
 	 */
 	public void calculateRewardsBatch(List<User> users) throws RuntimeException {
+		AttractionSnapshot attractionSnapshot = attractionCatalog.getSnapshot();
+		long rulesVersion = getRewardRulesVersion(attractionSnapshot);
+
+		List<UserLocations> usersLocations = new ArrayList<>(users.size());
+		List<Location> locations = new ArrayList<>();
+		for (User user : users) {
+			RewardEvaluation rewardEvaluation = user.peekLocationsToEvaluateForRewards(rulesVersion);
+			usersLocations.add(new UserLocations(user, rewardEvaluation, locations.size()));
+			rewardEvaluation.visitedLocations().forEach(visitedLocation -> locations.add(visitedLocation.location));
+		}
+		List<List<Attraction>> nearbyAttractions = attractionSnapshot.getAttractionIndex().findWithinAll(locations, proximityBuffer);
+
+		// The users only issue their reward points lookups on the pool, so that no thread waits for RewardCentral:
+		//    the number of lookups in flight is only bounded by the RewardCentralGateway
+		Queue<CompletableFuture<Void>> rewardedUsers = new ConcurrentLinkedQueue<>();
 		try {
-			ExecutorService executorService = Executors.newCachedThreadPool();
-			for (User user : users) {
-				Runnable runnableTask = () -> {
-					calculateRewards(user);
-				};
-				executorService.execute(runnableTask);
-			}
-			executorService.shutdown();
-			executorService.awaitTermination(20, TimeUnit.MINUTES);
+			batchExecutor.forEach(usersLocations, userLocations -> {
+				List<VisitedLocation> visitedLocations = userLocations.rewardEvaluation.visitedLocations();
+				List<List<Attraction>> userNearbyAttractions = nearbyAttractions.subList(userLocations.firstLocation,
+						userLocations.firstLocation + visitedLocations.size());
+				List<CompletableFuture<UserReward>> userRewards = requestNewRewards(userLocations.user, visitedLocations, userNearbyAttractions);
+				if (userRewards.isEmpty()) {
+					userLocations.user.commitRewardEvaluation(userLocations.rewardEvaluation);
+					return;
+				}
+				// The rewards are added once all of them are known, in the order they were found, then the locations are
+				// marked as evaluated: a failed reward points lookup leaves them to the next evaluation
+				rewardedUsers.add(CompletableFuture.allOf(userRewards.toArray(new CompletableFuture[0]))
+						.thenRun(() -> {
+							userRewards.forEach(userReward -> addUserReward(userLocations.user, userReward.join()));
+							userLocations.user.commitRewardEvaluation(userLocations.rewardEvaluation);
+						}));
+			});
 		} catch (InterruptedException interruptedException) {
-			logger.debug(interruptedException.getMessage());
+			logger.warn("Rewards batch interrupted, the users not processed yet are left to the next evaluation");
+			Thread.currentThread().interrupt();
+		}
+		for (CompletableFuture<Void> rewardedUser : rewardedUsers) {
+			try {
+				rewardedUser.join();
+			} catch (CompletionException | CancellationException e) {
+				logger.warn("Rewards of a user could not be calculated, its locations are left to the next evaluation: " + e.getMessage());
+			}
 		}
 	}
 
 	/**
-	 * This method checks if an attraction is already among the reward list of the user by comparing their names
+	 * Locations of a user to evaluate in a batch, firstLocation being the index of the first of them among the locations of the batch.
+	 */
+	private record UserLocations(User user, RewardEvaluation rewardEvaluation, int firstLocation) {
+	}
+
+	/**
+	 * This method checks if an attraction is already among the reward list of the user by looking its identifier up
+	 * in the set of rewarded attractions of the user.
 	 * @param user user of the app
 	 * @param attraction attraction that is analysed for reward
 	 *
@@ -97,42 +256,48 @@ public class RewardsService {
 	 * @version 1.0.0
 	 */
 	private static boolean isAttractionAlreadyRewarded(User user, Attraction attraction) {
-		boolean isAttractionAlreadyRewarded = false;
-		for (UserReward userReward : user.getUserRewards()) {
-			if(userReward.attraction.attractionName.equals(attraction.attractionName)){
-				isAttractionAlreadyRewarded = true;
-				break;
-			}
-		}
-		return isAttractionAlreadyRewarded;
+		return user.isAttractionRewarded(attraction.attractionId);
 	}
 
 	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
 		return getDistance(attraction, location) <= ATTRACTION_PROXIMITY_RANGE;
 	}
 	
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return getDistance(attraction, visitedLocation.location) <= proximityBuffer;
-	}
-	
+	/**
+	 * This method returns the reward points of the user for the attraction.
+	 * The points are only requested from RewardCentral when they are not already in the RewardPointsCache.
+	 *
+	 * @param attraction attraction that is rewarded
+	 * @param user user of the app
+	 * @return the reward points of the user for that attraction
+	 */
 	int getRewardPoints(Attraction attraction, User user) {
-		return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+		return getRewardPointsAsync(attraction, user).join();
+	}
+
+	/**
+	 * This method requests the reward points of the user for the attraction without waiting for RewardCentral.
+	 * Points found in the RewardPointsCache are returned right away, the others are requested through the RewardCentralGateway and cached,
+	 * concurrent requests for the same points sharing a single RewardCentral call.
+	 *
+	 * @param attraction attraction that is rewarded
+	 * @param user user of the app
+	 * @return a future completed with the reward points of the user for that attraction
+	 */
+	CompletableFuture<Integer> getRewardPointsAsync(Attraction attraction, User user) {
+		return rewardPointsCache.getRewardPointsAsync(attraction.attractionId, user.getUserId(),
+				() -> rewardCentralGateway.getAttractionRewardPoints(attraction.attractionId, user.getUserId()));
+	}
+
+	public RewardPointsCache getRewardPointsCache() {
+		return rewardPointsCache;
 	}
 
 	public double getDistanceFromVisitedLocation(VisitedLocation visitedLocation, Attraction attraction) {
 		return getDistance(attraction, visitedLocation.location);
 	}
 	public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
-
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                               + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
-
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+		return GeoDistance.miles(loc1, loc2);
 	}
 
 }
@@ -1,25 +1,41 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.cache.NearbyAttractionCache;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.catalog.AttractionSnapshot;
+import com.openclassrooms.tourguide.dto.CloseAttractionsInfo;
 import com.openclassrooms.tourguide.dto.NearByAttraction;
+import com.openclassrooms.tourguide.dto.UserBatchResult;
+import com.openclassrooms.tourguide.executor.BatchExecutor;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.persistence.EventJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshotStore;
+import com.openclassrooms.tourguide.registry.UserRegistry;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackingIntervalPolicy;
 import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserPreferences;
 import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.spatial.AttractionIndex.RankedAttraction;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
-import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 
 import tripPricer.Provider;
@@ -30,55 +46,298 @@ public class TourGuideService {
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 	private final GpsUtil gpsUtil;
 	private final RewardsService rewardsService;
+	private final BatchExecutor batchExecutor;
+	private final UserSnapshotStore userSnapshotStore;
+	private final TripDealsCache tripDealsCache;
+	private final NearbyAttractionCache nearbyAttractionCache;
+	private final Duration locationFreshnessWindow;
+	// Location resolutions in progress, by userId, shared by the concurrent getUserLocation() calls of a user
+	private final ConcurrentHashMap<UUID, CompletableFuture<VisitedLocation>> locationResolutionsInFlight = new ConcurrentHashMap<>();
+	private final LongAdder coalescedLocationResolutionCount = new LongAdder();
+	private volatile int nearbyAttractionCount = DEFAULT_NEARBY_ATTRACTION_COUNT;
+	private static final int DEFAULT_NEARBY_ATTRACTION_COUNT = 5;
+	private static final String UNKNOWN_USER_ERROR = "Unknown user";
+	private static final String NOT_PROCESSED_ERROR = "Request not processed";
 	private final TripPricer tripPricer = new TripPricer();
 	public final Tracker tracker;
 	boolean testMode = true;
 
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+		this(gpsUtil, rewardsService, BatchExecutor.getDefault());
+	}
+
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, BatchExecutor batchExecutor) {
+		this(gpsUtil, rewardsService, batchExecutor, new InternalUserGenerator(), UserSnapshotStore.disabled());
+	}
+
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, BatchExecutor batchExecutor,
+							InternalUserGenerator internalUserGenerator, UserSnapshotStore userSnapshotStore) {
+		this(gpsUtil, rewardsService, batchExecutor, internalUserGenerator, userSnapshotStore, new TripDealsCache(), Duration.ZERO);
+	}
+
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, BatchExecutor batchExecutor,
+							InternalUserGenerator internalUserGenerator, UserSnapshotStore userSnapshotStore,
+							TripDealsCache tripDealsCache, Duration locationFreshnessWindow) {
+		this(gpsUtil, rewardsService, batchExecutor, internalUserGenerator, userSnapshotStore, tripDealsCache,
+				new NearbyAttractionCache(), locationFreshnessWindow);
+	}
+
+	/**
+	 * @param internalUserGenerator generates the internal test users in test mode
+	 * @param userSnapshotStore restores the users of the last snapshot at startup, then saves them periodically
+	 * @param tripDealsCache caches the providers priced by TripPricer
+	 * @param nearbyAttractionCache caches the candidate nearest attractions of the areas the users stand in
+	 * @param locationFreshnessWindow age up to which the last location of a user is served by getUserLocation() without
+	 *                                locating the user again, zero to always serve the last location
+	 */
+	@Autowired
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, BatchExecutor batchExecutor,
+							InternalUserGenerator internalUserGenerator, UserSnapshotStore userSnapshotStore,
+							TripDealsCache tripDealsCache, NearbyAttractionCache nearbyAttractionCache,
+							@Value("${tourguide.location.freshness-window:PT0S}") Duration locationFreshnessWindow) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsService = rewardsService;
+		this.batchExecutor = batchExecutor;
+		this.userSnapshotStore = userSnapshotStore;
+		this.tripDealsCache = tripDealsCache;
+		this.nearbyAttractionCache = nearbyAttractionCache;
+		this.locationFreshnessWindow = locationFreshnessWindow;
 		
 		Locale.setDefault(Locale.US);
 
-		if (testMode) {
+		boolean snapshotRestored = restoreSnapshot();
+		if (snapshotRestored) {
+			logger.debug("Users restored from the snapshot, internal users not generated");
+		} else if (testMode) {
 			logger.info("TestMode enabled");
 			logger.debug("Initializing users");
-			initializeInternalUsers();
-			logger.debug("Finished initializing users");
+			initializeInternalUsers(internalUserGenerator);
+			logger.debug(internalUserGenerator.isInBackground() ? "Initializing users in the background" : "Finished initializing users");
+		}
+		tracker = new Tracker(this, batchExecutor, new TrackingIntervalPolicy(rewardsService::getAttractionIndex));
+		boolean eventJournalOpened = openEventJournal();
+		boolean replayable = snapshotRestored || !testMode || internalUserGenerator.hasFixedSeed();
+		if (eventJournalOpened && !replayable) {
+			logger.warn("Event journal not replayed: without a user snapshot nor a fixed tourguide.internal-users.seed, the "
+					+ "internal users get new identifiers and none of the journaled events would apply to them.");
 		}
-		tracker = new Tracker(this);
+		// The journal is replayed before any location is tracked, a replayed location being skipped when the user has a
+		// more recent one. Completed right away, on the constructing thread, unless the users are generated in the background.
+		internalUsersGenerated.whenComplete((result, e) -> {
+			if (eventJournalOpened && replayable) {
+				replayEventJournal();
+			}
+			tracker.start();
+			userSnapshotStore.start(userRegistry, rewardsService.getEventJournal());
+		});
 		addShutDownHook();
 	}
 
+	/**
+	 * Starts a new journal segment, the older ones being replayed by replayEventJournal().
+	 *
+	 * @return true if the journal is enabled and was opened
+	 */
+	private boolean openEventJournal() {
+		EventJournal eventJournal = rewardsService.getEventJournal();
+		if (!eventJournal.isEnabled()) {
+			return false;
+		}
+		try {
+			eventJournal.open();
+			return true;
+		} catch (IOException e) {
+			logger.error("Event journal could not be opened: " + e.getMessage(), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Applies the events of the journal segments written before the last start to the users of the registry.
+	 */
+	private void replayEventJournal() {
+		try {
+			rewardsService.getEventJournal().replay(userRegistry, getAttractionResolver());
+		} catch (IOException e) {
+			logger.error("Event journal could not be replayed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return gives the attraction of the current catalog with the given name, null if there is none
+	 */
+	private Function<String, Attraction> getAttractionResolver() {
+		Map<String, Attraction> attractionsByName = rewardsService.getAttractionCatalog().getSnapshot().getAttractions().stream()
+				.collect(Collectors.toMap(attraction -> attraction.attractionName, attraction -> attraction, (first, second) -> first));
+		return attractionsByName::get;
+	}
+
+	/**
+	 * Loads the users of the last snapshot, the rewarded attractions being resolved by name against the current catalog.
+	 *
+	 * @return true if users were restored
+	 */
+	private boolean restoreSnapshot() {
+		if (!userSnapshotStore.exists()) {
+			return false;
+		}
+		try {
+			return userSnapshotStore.load(userRegistry, getAttractionResolver()) > 0;
+		} catch (IOException e) {
+			logger.error("Users could not be restored from the snapshot " + userSnapshotStore.getSnapshotPath() + ": " + e.getMessage(), e);
+			return false;
+		}
+	}
+
 	public List<UserReward> getUserRewards(User user) {
 		return user.getUserRewards();
 	}
 
+	/**
+	 * Returns the last location of the user, or tracks it when the user has no location yet, or only one older than the
+	 * freshness window. Concurrent calls for the same user share a single tracking: the first caller tracks the user,
+	 * the others wait for its location, so that the user is located and its rewards calculated once.
+	 *
+	 * @param user the user
+	 * @return the current location of the user
+	 */
 	public VisitedLocation getUserLocation(User user) throws ExecutionException, InterruptedException {
-		VisitedLocation visitedLocation = (!user.getVisitedLocations().isEmpty()) ? user.getLastVisitedLocation()
-				: trackUserLocation(user);
-		return visitedLocation;
+		VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+		if (isFresh(lastVisitedLocation)) {
+			return lastVisitedLocation;
+		}
+		CompletableFuture<VisitedLocation> resolution = new CompletableFuture<>();
+		CompletableFuture<VisitedLocation> resolutionInFlight = locationResolutionsInFlight.putIfAbsent(user.getUserId(), resolution);
+		if (resolutionInFlight != null) {
+			coalescedLocationResolutionCount.increment();
+			return awaitLocationResolution(resolutionInFlight);
+		}
+		try {
+			// The resolution that just ended may have tracked the user between the first check and this one
+			lastVisitedLocation = user.getLastVisitedLocation();
+			VisitedLocation visitedLocation = isFresh(lastVisitedLocation) ? lastVisitedLocation : trackUserLocation(user);
+			resolution.complete(visitedLocation);
+			return visitedLocation;
+		} catch (ExecutionException | InterruptedException | RuntimeException e) {
+			resolution.completeExceptionally(e);
+			throw e;
+		} finally {
+			locationResolutionsInFlight.remove(user.getUserId(), resolution);
+		}
+	}
+
+	private boolean isFresh(VisitedLocation visitedLocation) {
+		if (visitedLocation == null) {
+			return false;
+		}
+		return locationFreshnessWindow.isZero() || locationFreshnessWindow.isNegative()
+				|| System.currentTimeMillis() - visitedLocation.timeVisited.getTime() <= locationFreshnessWindow.toMillis();
+	}
+
+	/**
+	 * Waits for the resolution of another caller, rethrowing the exception it failed with.
+	 */
+	private static VisitedLocation awaitLocationResolution(CompletableFuture<VisitedLocation> resolution)
+			throws ExecutionException, InterruptedException {
+		try {
+			return resolution.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ExecutionException) {
+				throw (ExecutionException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @param nearbyAttractionCount maximum number of attractions returned by getNearByAttractions()
+	 */
+	@Value("${tourguide.nearby-attractions.count:5}")
+	public void setNearbyAttractionCount(int nearbyAttractionCount) {
+		if (nearbyAttractionCount <= 0) {
+			throw new IllegalArgumentException("Nearby attraction count must be positive: " + nearbyAttractionCount);
+		}
+		this.nearbyAttractionCount = nearbyAttractionCount;
+	}
+
+	public int getNearbyAttractionCount() {
+		return nearbyAttractionCount;
+	}
+
+	public Duration getLocationFreshnessWindow() {
+		return locationFreshnessWindow;
+	}
+
+	/**
+	 * @return the number of getUserLocation() calls served by the tracking of a concurrent call
+	 */
+	public long getCoalescedLocationResolutionCount() {
+		return coalescedLocationResolutionCount.sum();
 	}
 
 	public User getUser(String userName) {
-		return internalUserMap.get(userName);
+		return userRegistry.getByName(userName);
+	}
+
+	public User getUserById(UUID userId) {
+		return userRegistry.getById(userId);
 	}
 
+	/**
+	 * Copies every user into a new list. Sweeps over every user should iterate over getUserRegistry() instead.
+	 *
+	 * @return a list of all the users
+	 */
 	public List<User> getAllUsers() {
-		return internalUserMap.values().stream().collect(Collectors.toList());
+		return userRegistry.stream().collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the registry of the users, which can be iterated over while users are added
+	 */
+	public UserRegistry getUserRegistry() {
+		return userRegistry;
+	}
+
+	/**
+	 * @return completed once the internal test users are all in the registry
+	 */
+	public CompletableFuture<Void> getInternalUsersGenerated() {
+		return internalUsersGenerated;
+	}
+
+	public NearbyAttractionCache getNearbyAttractionCache() {
+		return nearbyAttractionCache;
+	}
+
+	public TripDealsCache getTripDealsCache() {
+		return tripDealsCache;
 	}
 
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
-		}
+		userRegistry.add(user);
 	}
 
+	/**
+	 * Prices the trip of the user with its preferences and reward points. The providers are served from the cache while
+	 * neither changes, and concurrent requests for the same trip share a single TripPricer call.
+	 *
+	 * @param user the user
+	 * @return the providers of the trip, unmodifiable
+	 */
 	public List<Provider> getTripDeals(User user) {
-		int cumulativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
-		List<Provider> providers = tripPricer.getPrice(TRIP_PRICER_API_KEY, user.getUserId(),
-				user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-				user.getUserPreferences().getTripDuration(), cumulativeRewardPoints);
+		UserPreferences userPreferences = user.getUserPreferences();
+		int numberOfAdults = userPreferences.getNumberOfAdults();
+		int numberOfChildren = userPreferences.getNumberOfChildren();
+		int tripDuration = userPreferences.getTripDuration();
+		int cumulativeRewardPoints = user.getCumulativeRewardPoints();
+		List<Provider> providers = tripDealsCache.getTripDeals(user.getUserId(), numberOfAdults, numberOfChildren, tripDuration,
+				cumulativeRewardPoints, () -> tripPricer.getPrice(TRIP_PRICER_API_KEY, user.getUserId(), numberOfAdults,
+						numberOfChildren, tripDuration, cumulativeRewardPoints));
 		user.setTripDeals(providers);
 		return providers;
 	}
@@ -86,14 +345,15 @@ public class TourGuideService {
 	public VisitedLocation trackUserLocation(User user) throws ExecutionException, InterruptedException {
 		VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
 		user.addToVisitedLocations(visitedLocation);
+		rewardsService.getEventJournal().appendLocation(user, visitedLocation);
 		rewardsService.calculateRewards(user);
 		return visitedLocation;
 	}
 
 	/**
 	 * This method receives a list of users and intends to track their location (see trackUserLocation(User user)) for each of them.
-	 * For performance's sake, the ExecutorService class is used to optimize the process time.
-	 * A dynamic pool of threads is instantiated from the start and will grow as needed to achieve the method role.
+	 * For performance's sake, the shared BatchExecutor is used to optimize the process time.
+	 * The users are split into chunks, each of them being tracked by a task of the pool.
 	 *
 	 * @param users the list of users whose rewards will be calculated
 	 * @throws InterruptedException Exception when a task from a thread is interrupted and cannot be completed.
@@ -103,71 +363,167 @@ public class TourGuideService {
 	 */
 	//Function to optimize with multithreading
 	public void trackUserLocationBatch(List<User> users) throws InterruptedException {
-		ExecutorService executorService = Executors.newCachedThreadPool();
-		for (User user : users) {
-			Runnable runnableTask = () -> {
-				try {
-					trackUserLocation(user);
-				} catch (ExecutionException e) {
-					logger.debug(e.getMessage());
-				} catch (InterruptedException e) {
-					logger.debug(e.getMessage());
-				}
-			};
-			executorService.execute(runnableTask);
-		}
-		executorService.shutdown();
-		executorService.awaitTermination(20, TimeUnit.MINUTES);
+		batchExecutor.forEach(users, this::trackUserLocation);
 	}
 
 
 	/**
-	 * This method receives a user with its location and calculate the five nearest attraction.
+	 * This method receives a user with its location and calculate the nearest attractions, five by default.
 	 * It returns a list of DTO called NearByAttraction (see NearByAttraction class for more details)
-	 * The list is then sorted out by the distance between the user and the attraction locations.
+	 * The attractions are ranked by distance among the candidates of the area of the user, cached by the NearbyAttractionCache,
+	 * and limited to the attraction proximity of the user preferences.
+	 * Reward points are therefore only requested for the attractions returned, all at once.
 	 *
 	 * @param visitedLocation Location of the user
 	 * @param user User of the app
-	 * @return list of the five nearest attraction based off the user's location.
+	 * @return list of the nearest attractions based off the user's location.
 	 *
 	 * @author Denis Siveton
 	 * @version 1.0.0
 	 */
 	public List<NearByAttraction> getNearByAttractions(VisitedLocation visitedLocation, User user) {
-		List<NearByAttraction> nearbyAttractions = new ArrayList<>();
-		List<Attraction> availableAttractions = gpsUtil.getAttractions();
+		return requestNearByAttractions(rewardsService.getAttractionCatalog().getSnapshot(), visitedLocation, user).join();
+	}
 
-		for (Attraction attraction : availableAttractions) {
-			if (nearbyAttractions.size()<5){
-				nearbyAttractions.add(new NearByAttraction(attraction.attractionName, attraction.latitude, attraction.longitude, rewardsService.getDistanceFromVisitedLocation(visitedLocation, attraction), rewardsService.getRewardPoints(attraction, user)));
-				nearbyAttractions.sort(Comparator.comparing(NearByAttraction::getAttractionDistanceFromUserLocation));
+	/**
+	 * Finds the nearest attractions and requests their reward points at once, so that the RewardCentral calls overlap.
+	 *
+	 * @return a future completed with the nearest attractions, in ascending distance order
+	 */
+	private CompletableFuture<List<NearByAttraction>> requestNearByAttractions(AttractionSnapshot attractionSnapshot,
+																			   VisitedLocation visitedLocation, User user) {
+		List<CompletableFuture<NearByAttraction>> nearbyAttractions = new ArrayList<>();
+		double maxRadiusMiles = user.getUserPreferences().getAttractionProximity();
+		for (RankedAttraction rankedAttraction : nearbyAttractionCache.rankNearest(attractionSnapshot, visitedLocation.location,
+				nearbyAttractionCount, maxRadiusMiles)) {
+			Attraction attraction = rankedAttraction.attraction();
+			nearbyAttractions.add(rewardsService.getRewardPointsAsync(attraction, user).thenApply(rewardPoints ->
+					new NearByAttraction(attraction.attractionName, attraction.latitude, attraction.longitude,
+							rankedAttraction.distanceMiles(), rewardPoints)));
+		}
+		return CompletableFuture.allOf(nearbyAttractions.toArray(new CompletableFuture[0]))
+				.thenApply(allDone -> nearbyAttractions.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Gets the location of every user, see getUserLocation(User user). The users are located in parallel on the BatchExecutor.
+	 *
+	 * @param userNames names of the users
+	 * @return the location of each user, or the reason it could not be obtained, in the order of the names
+	 * @throws InterruptedException if interrupted while waiting for the users to be located
+	 */
+	public List<UserBatchResult<VisitedLocation>> getUserLocations(List<String> userNames) throws InterruptedException {
+		return forEachUser(userNames, this::getUserLocation);
+	}
+
+	/**
+	 * Gets the nearest attractions of every user, see getNearByAttractions(VisitedLocation visitedLocation, User user).
+	 * The users are located in parallel on the BatchExecutor, then the reward points of the whole batch are requested
+	 * at once. Every user is searched in the same attraction catalog snapshot, taken once for the batch.
+	 *
+	 * @param userNames names of the users
+	 * @return the location and nearest attractions of each user, or the reason they could not be obtained, in the order of the names
+	 * @throws InterruptedException if interrupted while waiting for the users to be located
+	 */
+	public List<UserBatchResult<CloseAttractionsInfo>> getNearByAttractions(List<String> userNames) throws InterruptedException {
+		AttractionSnapshot attractionSnapshot = rewardsService.getAttractionCatalog().getSnapshot();
+		List<UserBatchResult<CompletableFuture<CloseAttractionsInfo>>> requests = forEachUser(userNames, user -> {
+			VisitedLocation visitedLocation = getUserLocation(user);
+			return requestNearByAttractions(attractionSnapshot, visitedLocation, user).thenApply(nearbyAttractions ->
+					new CloseAttractionsInfo(visitedLocation.location.latitude, visitedLocation.location.longitude, nearbyAttractions));
+		});
+		List<UserBatchResult<CloseAttractionsInfo>> results = new ArrayList<>(requests.size());
+		for (UserBatchResult<CompletableFuture<CloseAttractionsInfo>> request : requests) {
+			if (!request.isSuccess()) {
+				results.add(UserBatchResult.failure(request.getUserName(), request.getError()));
+				continue;
 			}
-			else{
-				double distanceBetweenUserAndAttraction = rewardsService.getDistanceFromVisitedLocation(visitedLocation, attraction);
-				int indexOfList = findIndexByDistance(nearbyAttractions, distanceBetweenUserAndAttraction);
-				if(indexOfList > -1){
-					nearbyAttractions.add(indexOfList, new NearByAttraction(attraction.attractionName, attraction.latitude, attraction.longitude, rewardsService.getDistanceFromVisitedLocation(visitedLocation, attraction), rewardsService.getRewardPoints(attraction, user)));
-					nearbyAttractions.remove(5);
-				}
+			try {
+				results.add(UserBatchResult.success(request.getUserName(), request.getResult().get()));
+			} catch (ExecutionException e) {
+				results.add(UserBatchResult.failure(request.getUserName(), describeFailure(e.getCause())));
 			}
 		}
-		return nearbyAttractions;
+		return results;
 	}
 
-	private static int findIndexByDistance(List<NearByAttraction> nearByAttractionList, double distance) {
-		int index = -1;
-		for (int i = 0; i < nearByAttractionList.size(); i++) {
-			if (nearByAttractionList.get(i).getAttractionDistanceFromUserLocation() > distance) {
-				return i;
+	/**
+	 * Gets the rewards of every user, see getUserRewards(User user).
+	 *
+	 * @param userNames names of the users
+	 * @return the rewards of each user, or the reason they could not be obtained, in the order of the names
+	 */
+	public List<UserBatchResult<List<UserReward>>> getUserRewards(List<String> userNames) {
+		List<UserBatchResult<List<UserReward>>> results = new ArrayList<>(userNames.size());
+		for (String userName : userNames) {
+			User user = getUser(userName);
+			results.add((user != null) ? UserBatchResult.success(userName, getUserRewards(user))
+					: UserBatchResult.failure(userName, UNKNOWN_USER_ERROR));
+		}
+		return results;
+	}
+
+	/**
+	 * Applies the request to the user of every name, in parallel on the BatchExecutor.
+	 * A failure, or an unknown name, only fails the result of that user.
+	 *
+	 * @return the result of each user, in the order of the names
+	 */
+	private <T> List<UserBatchResult<T>> forEachUser(List<String> userNames, UserRequest<T> request) throws InterruptedException {
+		List<UserBatchResult<T>> results = new ArrayList<>(Collections.nCopies(userNames.size(), null));
+		List<Integer> indexes = IntStream.range(0, userNames.size()).boxed().collect(Collectors.toList());
+		batchExecutor.forEach(indexes, index -> {
+			String userName = userNames.get(index);
+			User user = getUser(userName);
+			if (user == null) {
+				results.set(index, UserBatchResult.failure(userName, UNKNOWN_USER_ERROR));
+				return;
 			}
+			try {
+				results.set(index, UserBatchResult.success(userName, request.apply(user)));
+			} catch (ExecutionException e) {
+				results.set(index, UserBatchResult.failure(userName, describeFailure(e.getCause())));
+			} catch (RuntimeException e) {
+				results.set(index, UserBatchResult.failure(userName, describeFailure(e)));
+			}
+		});
+		// An item the BatchExecutor could not process, the pool rejecting it or the batch being interrupted, has no result
+		for (int i = 0; i < results.size(); i++) {
+			if (results.get(i) == null) {
+				results.set(i, UserBatchResult.failure(userNames.get(i), NOT_PROCESSED_ERROR));
+			}
+		}
+		return results;
+	}
+
+	private static String describeFailure(Throwable failure) {
+		if (failure instanceof CompletionException && failure.getCause() != null) {
+			failure = failure.getCause();
 		}
-		return index;
+		return (failure.getMessage() != null) ? failure.getMessage() : failure.getClass().getSimpleName();
+	}
+
+	/**
+	 * Request made for a single user of a batch.
+	 */
+	@FunctionalInterface
+	private interface UserRequest<T> {
+		T apply(User user) throws ExecutionException, InterruptedException;
 	}
 
 	private void addShutDownHook() {
 		Runtime.getRuntime().addShutdownHook(new Thread() {
 			public void run() {
 				tracker.stopTracking();
+				userSnapshotStore.stop();
+				try {
+					if (userSnapshotStore.isEnabled()) {
+						userSnapshotStore.checkpoint(userRegistry, rewardsService.getEventJournal());
+					}
+					rewardsService.getEventJournal().close();
+				} catch (IOException e) {
+					logger.error("Final user snapshot or journal flush failed: " + e.getMessage(), e);
+				}
 			}
 		});
 	}
@@ -180,42 +536,11 @@ public class TourGuideService {
 	private static final String TRIP_PRICER_API_KEY = "test-server-api-key";
 	// Database connection will be used for external users, but for testing purposes
 	// internal users are provided and stored in memory
-	private final Map<String, User> internalUserMap = new HashMap<>();
-
-	private void initializeInternalUsers() {
-		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-			String userName = "internalUser" + i;
-			String phone = "000";
-			String email = userName + "@tourGuide.com";
-			User user = new User(UUID.randomUUID(), userName, phone, email);
-			generateUserLocationHistory(user);
-			internalUserMap.put(userName, user);
-		});
-		logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
-	}
-
-	private void generateUserLocationHistory(User user) {
-		IntStream.range(0, 3).forEach(i -> {
-			user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-					new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
-		});
-	}
-
-	private double generateRandomLongitude() {
-		double leftLimit = -180;
-		double rightLimit = 180;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
-	}
-
-	private double generateRandomLatitude() {
-		double leftLimit = -85.05112878;
-		double rightLimit = 85.05112878;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
-	}
+	private final UserRegistry userRegistry = new UserRegistry();
+	private CompletableFuture<Void> internalUsersGenerated = CompletableFuture.completedFuture(null);
 
-	private Date getRandomTime() {
-		LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-		return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+	private void initializeInternalUsers(InternalUserGenerator internalUserGenerator) {
+		internalUsersGenerated = internalUserGenerator.generate(userRegistry, InternalTestHelper.getInternalUserNumber());
 	}
 
 }
@@ -0,0 +1,151 @@
+package com.openclassrooms.tourguide.spatial;
+
+import java.util.Arrays;
+import java.util.List;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Distances between a location and a fixed list of attractions, laid out as a structure of arrays.
+ * <p>
+ * The coordinates of the attractions, in degrees and radians, and the sine and cosine of their latitude are computed
+ * once and kept in primitive arrays, so that a query only computes the trigonometry of the location and scans the
+ * arrays sequentially. A proximity query first rejects the attractions outside of the latitude/longitude bounding box
+ * of the searched circle, then runs the exact test on the others.
+ * <p>
+ * Distances are computed operation for operation as GeoDistance.miles(attraction, location) does, so they are
+ * bit-identical to it.
+ */
+public class AttractionDistanceKernel {
+
+	// Safety margin absorbing the rounding of the bounding box trigonometry
+	private static final double BOUNDING_BOX_MARGIN_DEGREES = 1e-6;
+
+	private final double[] latitudes;
+	private final double[] longitudes;
+	private final double[] longitudesRadians;
+	private final double[] sinLatitudes;
+	private final double[] cosLatitudes;
+
+	public AttractionDistanceKernel(List<Attraction> attractions) {
+		int size = attractions.size();
+		this.latitudes = new double[size];
+		this.longitudes = new double[size];
+		this.longitudesRadians = new double[size];
+		this.sinLatitudes = new double[size];
+		this.cosLatitudes = new double[size];
+		for (int i = 0; i < size; i++) {
+			Attraction attraction = attractions.get(i);
+			double latitudeRadians = Math.toRadians(attraction.latitude);
+			latitudes[i] = attraction.latitude;
+			longitudes[i] = attraction.longitude;
+			longitudesRadians[i] = Math.toRadians(attraction.longitude);
+			sinLatitudes[i] = Math.sin(latitudeRadians);
+			cosLatitudes[i] = Math.cos(latitudeRadians);
+		}
+	}
+
+	public int size() {
+		return latitudes.length;
+	}
+
+	/**
+	 * @param index index of the attraction in the list the kernel was built with
+	 * @param location the location
+	 * @return the distance in statute miles between the attraction and the location
+	 */
+	public double miles(int index, Location location) {
+		double latitudeRadians = Math.toRadians(location.latitude);
+		return miles(index, Math.sin(latitudeRadians), Math.cos(latitudeRadians), Math.toRadians(location.longitude));
+	}
+
+	/**
+	 * Computes the distance between the location and every attraction.
+	 *
+	 * @param location the location
+	 * @param miles receives, at the index of each attraction, its distance in statute miles to the location
+	 */
+	public void milesTo(Location location, double[] miles) {
+		if (miles.length < size()) {
+			throw new IllegalArgumentException("Distance array too small: " + miles.length + " < " + size());
+		}
+		double latitudeRadians = Math.toRadians(location.latitude);
+		double sinLatitude = Math.sin(latitudeRadians);
+		double cosLatitude = Math.cos(latitudeRadians);
+		double longitudeRadians = Math.toRadians(location.longitude);
+		for (int i = 0; i < latitudes.length; i++) {
+			miles[i] = miles(i, sinLatitude, cosLatitude, longitudeRadians);
+		}
+	}
+
+	/**
+	 * @param location center of the search
+	 * @param radiusMiles search radius in statute miles
+	 * @return the indexes, in ascending order, of the attractions located at most radiusMiles away from the location
+	 */
+	public int[] findWithin(Location location, double radiusMiles) {
+		return findWithin(location, radiusMiles, null);
+	}
+
+	/**
+	 * Same as findWithin(location, radiusMiles), restricted to the given attractions.
+	 *
+	 * @param location center of the search
+	 * @param radiusMiles search radius in statute miles
+	 * @param candidateIndexes indexes of the attractions to test, null to test all of them
+	 * @return the indexes of the candidates located at most radiusMiles away from the location, in the candidates order
+	 */
+	public int[] findWithin(Location location, double radiusMiles, int[] candidateIndexes) {
+		int candidateCount = (candidateIndexes != null) ? candidateIndexes.length : latitudes.length;
+		int[] result = new int[candidateCount];
+		int resultCount = 0;
+
+		double radiusDegrees = GeoDistance.milesToDegrees(radiusMiles) + BOUNDING_BOX_MARGIN_DEGREES;
+		// Past half a revolution, or when the circle contains a pole, the bounding box does not reject anything
+		boolean latitudeFiltered = radiusDegrees < 180;
+		boolean longitudeFiltered = latitudeFiltered
+				&& location.latitude - radiusDegrees > -90 && location.latitude + radiusDegrees < 90;
+		double longitudeDelta = longitudeFiltered
+				? Math.toDegrees(Math.asin(Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(location.latitude))))
+						+ BOUNDING_BOX_MARGIN_DEGREES
+				: 180;
+
+		double latitudeRadians = Math.toRadians(location.latitude);
+		double sinLatitude = Math.sin(latitudeRadians);
+		double cosLatitude = Math.cos(latitudeRadians);
+		double longitudeRadians = Math.toRadians(location.longitude);
+		for (int i = 0; i < candidateCount; i++) {
+			int index = (candidateIndexes != null) ? candidateIndexes[i] : i;
+			if (latitudeFiltered && Math.abs(latitudes[index] - location.latitude) > radiusDegrees) {
+				continue;
+			}
+			if (longitudeFiltered && longitudeDistanceDegrees(longitudes[index], location.longitude) > longitudeDelta) {
+				continue;
+			}
+			if (miles(index, sinLatitude, cosLatitude, longitudeRadians) <= radiusMiles) {
+				result[resultCount++] = index;
+			}
+		}
+		return Arrays.copyOf(result, resultCount);
+	}
+
+	/**
+	 * Same computation as GeoDistance.miles(attraction, location), the attraction trigonometry coming from the arrays.
+	 */
+	private double miles(int index, double sinLatitude, double cosLatitude, double longitudeRadians) {
+		double angle = Math.acos(sinLatitudes[index] * sinLatitude
+				+ cosLatitudes[index] * cosLatitude * Math.cos(longitudesRadians[index] - longitudeRadians));
+
+		double nauticalMiles = 60 * Math.toDegrees(angle);
+		return GeoDistance.STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+	}
+
+	/**
+	 * @return the absolute difference between the two longitudes, across the antimeridian if shorter, within [0, 180]
+	 */
+	private static double longitudeDistanceDegrees(double longitude1, double longitude2) {
+		double difference = Math.abs(longitude1 - longitude2) % 360;
+		return (difference > 180) ? 360 - difference : difference;
+	}
+}
@@ -0,0 +1,318 @@
+package com.openclassrooms.tourguide.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Immutable latitude/longitude grid over a list of attractions.
+ * <p>
+ * Each attraction is stored in the cell containing its coordinates. A proximity query first derives the bounding box
+ * of the searched spherical cap (widened to every longitude when it contains a pole, split in two when it crosses
+ * the antimeridian), then runs the exact distance test of the AttractionDistanceKernel on the attractions of the
+ * overlapped cells only. Small lists skip the grid, the kernel scanning all of them.
+ * Results are therefore identical to a brute-force scan of the whole list.
+ */
+public class AttractionIndex {
+
+	private static final double DEFAULT_CELL_SIZE_DEGREES = 1.0;
+	// Safety margin absorbing the rounding of the bounding box trigonometry
+	private static final double BOUNDING_BOX_MARGIN_DEGREES = 1e-6;
+	// Up to this size, scanning the kernel arrays is cheaper than looking the grid cells up
+	private static final int GRID_MIN_SIZE = 128;
+
+	private final List<Attraction> attractions;
+	private final double cellSizeDegrees;
+	private final int latitudeCells;
+	private final int longitudeCells;
+	private final Map<Integer, int[]> cells = new HashMap<>();
+	private final AttractionDistanceKernel distanceKernel;
+
+	public AttractionIndex(List<Attraction> attractions) {
+		this(attractions, DEFAULT_CELL_SIZE_DEGREES);
+	}
+
+	public AttractionIndex(List<Attraction> attractions, double cellSizeDegrees) {
+		if (!(cellSizeDegrees > 0) || cellSizeDegrees > 180) {
+			throw new IllegalArgumentException("Cell size must be within ]0, 180] degrees: " + cellSizeDegrees);
+		}
+		this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+		this.cellSizeDegrees = cellSizeDegrees;
+		this.latitudeCells = (int) Math.ceil(180 / cellSizeDegrees);
+		this.longitudeCells = (int) Math.ceil(360 / cellSizeDegrees);
+		this.distanceKernel = new AttractionDistanceKernel(this.attractions);
+
+		Map<Integer, List<Integer>> cellContents = new HashMap<>();
+		for (int i = 0; i < this.attractions.size(); i++) {
+			Attraction attraction = this.attractions.get(i);
+			int cellKey = cellKey(latitudeCell(attraction.latitude), longitudeCell(attraction.longitude));
+			cellContents.computeIfAbsent(cellKey, key -> new ArrayList<>()).add(i);
+		}
+		cellContents.forEach((cellKey, indexes) -> cells.put(cellKey, indexes.stream().mapToInt(Integer::intValue).toArray()));
+	}
+
+	/**
+	 * @return the indexed attractions, in their original order
+	 */
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	public int size() {
+		return attractions.size();
+	}
+
+	/**
+	 * @return the distance kernel over the indexed attractions, in their original order
+	 */
+	public AttractionDistanceKernel getDistanceKernel() {
+		return distanceKernel;
+	}
+
+	/**
+	 * Returns every attraction located at most radiusMiles away from the location.
+	 *
+	 * @param location center of the search
+	 * @param radiusMiles search radius in statute miles
+	 * @return the matching attractions, in their original order
+	 */
+	public List<Attraction> findWithin(Location location, double radiusMiles) {
+		int[] indexes = (attractions.size() < GRID_MIN_SIZE)
+				? distanceKernel.findWithin(location, radiusMiles)
+				: distanceKernel.findWithin(location, radiusMiles, candidateIndexes(location, radiusMiles));
+		return toAttractions(indexes);
+	}
+
+	/**
+	 * Returns, for each location, every attraction located at most radiusMiles away from it, as findWithin does.
+	 * <p>
+	 * The locations are bucketed by grid cell. The attractions that can be near a cell, those within radiusMiles plus
+	 * the largest distance from the cell center to a point of the cell, are looked up once per cell, and only those are tested against
+	 * the locations of that cell. The cells are processed in parallel on the common ForkJoinPool.
+	 *
+	 * @param locations centers of the searches
+	 * @param radiusMiles search radius in statute miles
+	 * @return at the index of each location, the matching attractions in their original order
+	 */
+	public List<List<Attraction>> findWithinAll(List<Location> locations, double radiusMiles) {
+		Map<Integer, List<Integer>> locationsByCell = new HashMap<>();
+		for (int i = 0; i < locations.size(); i++) {
+			Location location = locations.get(i);
+			int cellKey = cellKey(latitudeCell(location.latitude), longitudeCell(location.longitude));
+			locationsByCell.computeIfAbsent(cellKey, key -> new ArrayList<>()).add(i);
+		}
+
+		// A point of a cell is at most half a cell size away from the center latitude, then at most half a cell size along its
+		// parallel, as a longitude degree is never longer than a latitude one: a cell size bounds its distance to the center
+		double cellRadiusMiles = GeoDistance.degreesToMiles(cellSizeDegrees + BOUNDING_BOX_MARGIN_DEGREES);
+		List<Attraction>[] result = newListArray(locations.size());
+		locationsByCell.entrySet().parallelStream().forEach(cell -> {
+			Location cellCenter = cellCenter(cell.getKey());
+			double cellSearchRadiusMiles = radiusMiles + cellRadiusMiles;
+			int[] cellCandidates = (attractions.size() < GRID_MIN_SIZE)
+					? distanceKernel.findWithin(cellCenter, cellSearchRadiusMiles)
+					: distanceKernel.findWithin(cellCenter, cellSearchRadiusMiles, candidateIndexes(cellCenter, cellSearchRadiusMiles));
+			for (int locationIndex : cell.getValue()) {
+				int[] indexes = (cellCandidates.length == 0)
+						? cellCandidates
+						: distanceKernel.findWithin(locations.get(locationIndex), radiusMiles, cellCandidates);
+				result[locationIndex] = toAttractions(indexes);
+			}
+		});
+		return Arrays.asList(result);
+	}
+
+	/**
+	 * Returns the k attractions closest to the location, sorted by increasing distance.
+	 * Attractions at the same distance keep their original relative order.
+	 *
+	 * @param location center of the search
+	 * @param k maximum number of attractions returned
+	 * @return the k nearest attractions
+	 */
+	public List<Attraction> findNearest(Location location, int k) {
+		List<RankedAttraction> rankedAttractions = rankNearest(location, k, Double.POSITIVE_INFINITY);
+		List<Attraction> result = new ArrayList<>(rankedAttractions.size());
+		for (RankedAttraction rankedAttraction : rankedAttractions) {
+			result.add(rankedAttraction.attraction());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the k attractions closest to the location, at most maxRadiusMiles away from it, with their distance.
+	 * They are sorted by increasing distance, attractions at the same distance keeping their original relative order.
+	 * <p>
+	 * The search radius starts at one cell and doubles until it holds at least k attractions, which guarantees
+	 * that no closer attraction lies outside of it, or until it reaches maxRadiusMiles. The distance of each candidate
+	 * is computed once per radius, and only the k nearest candidates are kept, in a bounded heap whose head is the
+	 * farthest of them, instead of sorting all the candidates.
+	 *
+	 * @param location center of the search
+	 * @param k maximum number of attractions returned
+	 * @param maxRadiusMiles largest distance of the attractions returned, in statute miles, infinite for no limit
+	 * @return the k nearest attractions within maxRadiusMiles, with their distance in statute miles
+	 */
+	public List<RankedAttraction> rankNearest(Location location, int k, double maxRadiusMiles) {
+		if (k <= 0 || attractions.isEmpty() || !(maxRadiusMiles >= 0)) {
+			return new ArrayList<>();
+		}
+		double radiusMiles = Math.min(GeoDistance.degreesToMiles(cellSizeDegrees), maxRadiusMiles);
+		while (true) {
+			boolean wholeGlobe = coversWholeGlobe(radiusMiles);
+			boolean lastRadius = wholeGlobe || radiusMiles >= maxRadiusMiles;
+			PriorityQueue<Candidate> nearest = new PriorityQueue<>(k + 1, Candidate.FARTHEST_FIRST);
+			int withinRadiusCount = 0;
+			for (int index : candidateIndexes(location, radiusMiles)) {
+				double distance = distanceKernel.miles(index, location);
+				if (wholeGlobe ? distance > maxRadiusMiles : distance > radiusMiles) {
+					continue;
+				}
+				withinRadiusCount++;
+				Candidate candidate = new Candidate(index, distance);
+				if (nearest.size() < k) {
+					nearest.add(candidate);
+				} else if (Candidate.FARTHEST_FIRST.compare(candidate, nearest.peek()) > 0) {
+					// The candidates come by ascending index: one at the same distance as the head never replaces it
+					nearest.poll();
+					nearest.add(candidate);
+				}
+			}
+			if (lastRadius || withinRadiusCount >= k) {
+				RankedAttraction[] result = new RankedAttraction[nearest.size()];
+				for (int i = result.length - 1; i >= 0; i--) {
+					Candidate candidate = nearest.poll();
+					result[i] = new RankedAttraction(attractions.get(candidate.index), candidate.distance);
+				}
+				return new ArrayList<>(Arrays.asList(result));
+			}
+			radiusMiles = Math.min(radiusMiles * 2, maxRadiusMiles);
+		}
+	}
+
+	/**
+	 * Lists, in ascending order, the indexes of the attractions lying in the cells overlapped by the bounding box
+	 * of the circle of radius radiusMiles centered on the location.
+	 */
+	private int[] candidateIndexes(Location location, double radiusMiles) {
+		if (coversWholeGlobe(radiusMiles)) {
+			int[] allIndexes = new int[attractions.size()];
+			for (int i = 0; i < allIndexes.length; i++) {
+				allIndexes[i] = i;
+			}
+			return allIndexes;
+		}
+		double radiusDegrees = GeoDistance.milesToDegrees(radiusMiles) + BOUNDING_BOX_MARGIN_DEGREES;
+		double minLatitude = location.latitude - radiusDegrees;
+		double maxLatitude = location.latitude + radiusDegrees;
+
+		// Ranges of longitude cells to look up, as {first, last} pairs
+		int[] longitudeCellRanges = {0, longitudeCells - 1};
+		if (minLatitude > -90 && maxLatitude < 90) {
+			double longitudeDelta = Math.toDegrees(Math.asin(Math.sin(Math.toRadians(radiusDegrees))
+					/ Math.cos(Math.toRadians(location.latitude)))) + BOUNDING_BOX_MARGIN_DEGREES;
+			if (longitudeDelta < 180) {
+				double westLongitude = normalizeLongitude(location.longitude - longitudeDelta);
+				double eastLongitude = westLongitude + 2 * longitudeDelta;
+				// The last cell is narrower when the cell size does not divide 360: cells only wrap around at -180/180
+				longitudeCellRanges = (eastLongitude < 180)
+						? new int[] {longitudeCell(westLongitude), longitudeCell(eastLongitude)}
+						: new int[] {longitudeCell(westLongitude), longitudeCells - 1, 0, longitudeCell(eastLongitude - 360)};
+			}
+		}
+		// Otherwise the circle contains a pole (or the delta is NaN at its edge): every longitude is concerned
+
+		List<Integer> candidates = new ArrayList<>();
+		for (int latitudeCell = latitudeCell(minLatitude); latitudeCell <= latitudeCell(maxLatitude); latitudeCell++) {
+			for (int range = 0; range < longitudeCellRanges.length; range += 2) {
+				for (int longitudeCell = longitudeCellRanges[range]; longitudeCell <= longitudeCellRanges[range + 1]; longitudeCell++) {
+					int[] cellIndexes = cells.get(cellKey(latitudeCell, longitudeCell));
+					if (cellIndexes != null) {
+						for (int index : cellIndexes) {
+							candidates.add(index);
+						}
+					}
+				}
+			}
+		}
+		return candidates.stream().mapToInt(Integer::intValue).sorted().toArray();
+	}
+
+	private List<Attraction> toAttractions(int[] indexes) {
+		if (indexes.length == 0) {
+			return Collections.emptyList();
+		}
+		List<Attraction> result = new ArrayList<>(indexes.length);
+		for (int index : indexes) {
+			result.add(attractions.get(index));
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Attraction>[] newListArray(int size) {
+		return (List<Attraction>[]) new List[size];
+	}
+
+	/**
+	 * @return the center of the part of the cell lying on the globe
+	 */
+	private Location cellCenter(int cellKey) {
+		int latitudeCell = cellKey / longitudeCells;
+		int longitudeCell = cellKey % longitudeCells;
+		double minLatitude = -90 + latitudeCell * cellSizeDegrees;
+		double maxLatitude = Math.min(90, minLatitude + cellSizeDegrees);
+		double minLongitude = -180 + longitudeCell * cellSizeDegrees;
+		double maxLongitude = Math.min(180, minLongitude + cellSizeDegrees);
+		return new Location((minLatitude + maxLatitude) / 2, (minLongitude + maxLongitude) / 2);
+	}
+
+	private boolean coversWholeGlobe(double radiusMiles) {
+		return !(GeoDistance.milesToDegrees(radiusMiles) < 180);
+	}
+
+	private int latitudeCell(double latitude) {
+		int cell = (int) Math.floor((latitude + 90) / cellSizeDegrees);
+		return Math.max(0, Math.min(latitudeCells - 1, cell));
+	}
+
+	private int longitudeCell(double longitude) {
+		int cell = (int) Math.floor((normalizeLongitude(longitude) + 180) / cellSizeDegrees);
+		return Math.max(0, Math.min(longitudeCells - 1, cell));
+	}
+
+	/**
+	 * @return the same longitude within [-180, 180[
+	 */
+	private static double normalizeLongitude(double longitude) {
+		double normalized = longitude - 360 * Math.floor((longitude + 180) / 360);
+		return (normalized >= 180) ? normalized - 360 : normalized;
+	}
+
+	private int cellKey(int latitudeCell, int longitudeCell) {
+		return latitudeCell * longitudeCells + longitudeCell;
+	}
+
+	/**
+	 * Attraction found by a nearest attractions search, with its distance to the center of the search.
+	 *
+	 * @param attraction the attraction
+	 * @param distanceMiles distance in statute miles between the attraction and the center of the search
+	 */
+	public record RankedAttraction(Attraction attraction, double distanceMiles) {
+	}
+
+	private record Candidate(int index, double distance) {
+		// Farthest first, then latest in the original order first
+		private static final Comparator<Candidate> FARTHEST_FIRST =
+				Comparator.comparingDouble(Candidate::distance).thenComparingInt(Candidate::index).reversed();
+	}
+}
@@ -0,0 +1,66 @@
+package com.openclassrooms.tourguide.spatial;
+
+import gpsUtil.location.Location;
+
+/**
+ * Great-circle distance helpers shared by the reward and nearby-attraction computations.
+ * <p>
+ * The formula is the spherical law of cosines historically used by RewardsService, kept operation for operation
+ * so that every caller gets bit-identical results.
+ */
+public final class GeoDistance {
+
+	public static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+
+	private GeoDistance() {
+	}
+
+	/**
+	 * Calculates the distance in statute miles between two locations.
+	 *
+	 * @param loc1 first location
+	 * @param loc2 second location
+	 * @return the distance in statute miles
+	 */
+	public static double miles(Location loc1, Location loc2) {
+		return miles(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude);
+	}
+
+	/**
+	 * Calculates the distance in statute miles between two points given in degrees.
+	 *
+	 * @return the distance in statute miles
+	 */
+	public static double miles(double latitude1, double longitude1, double latitude2, double longitude2) {
+		double lat1 = Math.toRadians(latitude1);
+		double lon1 = Math.toRadians(longitude1);
+		double lat2 = Math.toRadians(latitude2);
+		double lon2 = Math.toRadians(longitude2);
+
+		double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
+				+ Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+
+		double nauticalMiles = 60 * Math.toDegrees(angle);
+		return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+	}
+
+	/**
+	 * Converts a distance in statute miles into the angle (in degrees) it spans on the globe.
+	 *
+	 * @param miles distance in statute miles
+	 * @return the matching central angle in degrees
+	 */
+	public static double milesToDegrees(double miles) {
+		return miles / STATUTE_MILES_PER_NAUTICAL_MILE / 60;
+	}
+
+	/**
+	 * Converts a central angle (in degrees) into the distance in statute miles it spans on the globe.
+	 *
+	 * @param degrees central angle in degrees
+	 * @return the matching distance in statute miles
+	 */
+	public static double degreesToMiles(double degrees) {
+		return degrees * 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+	}
+}
@@ -0,0 +1,113 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel holding items until their due time.
+ * <p>
+ * Time is split into ticks of tickDuration. An item due at tick t is stored in the bucket t modulo wheelSize, so that
+ * scheduling is O(1) and advancing the wheel only visits the buckets of the elapsed ticks. Items due more than one
+ * revolution ahead share their bucket with earlier items and are left in place until their own tick is reached.
+ * <p>
+ * The wheel does not read the clock: the caller gives the current time, in System.nanoTime() units, to every call.
+ */
+public class TimingWheel<T> {
+
+	private final long tickNanos;
+	private final long startNanos;
+	private final List<List<Entry<T>>> buckets;
+	private final int mask;
+	// First tick not processed by advance() yet
+	private long currentTick = 0;
+	private int size = 0;
+
+	/**
+	 * @param tickDuration resolution of the wheel, an item is released by the advance() call reaching the tick of its due time
+	 * @param wheelSize number of buckets, rounded up to a power of two
+	 * @param startNanos time of tick zero
+	 */
+	public TimingWheel(Duration tickDuration, int wheelSize, long startNanos) {
+		if (tickDuration.isZero() || tickDuration.isNegative()) {
+			throw new IllegalArgumentException("Tick duration must be positive: " + tickDuration);
+		}
+		if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+			throw new IllegalArgumentException("Wheel size must be between 1 and 2^30: " + wheelSize);
+		}
+		int bucketCount = Integer.highestOneBit(wheelSize - 1) << 1;
+		bucketCount = Math.max(bucketCount, 1);
+		this.tickNanos = tickDuration.toNanos();
+		this.startNanos = startNanos;
+		this.mask = bucketCount - 1;
+		this.buckets = new ArrayList<>(bucketCount);
+		for (int i = 0; i < bucketCount; i++) {
+			buckets.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Holds the item until dueNanos. An item due in the past is released by the next call to advance().
+	 *
+	 * @param item the item to hold
+	 * @param dueNanos time, in System.nanoTime() units, at which the item is due
+	 */
+	public synchronized void schedule(T item, long dueNanos) {
+		long dueTick = Math.max(toTick(dueNanos), currentTick);
+		buckets.get((int) (dueTick & mask)).add(new Entry<>(item, dueTick));
+		size++;
+	}
+
+	/**
+	 * Removes and returns the items due at nowNanos.
+	 *
+	 * @param nowNanos current time, in System.nanoTime() units
+	 * @return the items due
+	 */
+	public synchronized List<T> advance(long nowNanos) {
+		List<T> dueItems = new ArrayList<>();
+		long targetTick = toTick(nowNanos);
+		if (targetTick < currentTick) {
+			return dueItems;
+		}
+		// Past one revolution every bucket has been visited, the due test releases the items of the skipped ticks
+		long lastVisitedTick = Math.min(targetTick, currentTick + mask);
+		for (long tick = currentTick; tick <= lastVisitedTick; tick++) {
+			List<Entry<T>> bucket = buckets.get((int) (tick & mask));
+			int keptCount = 0;
+			for (Entry<T> entry : bucket) {
+				if (entry.dueTick <= targetTick) {
+					dueItems.add(entry.item);
+				} else {
+					bucket.set(keptCount++, entry);
+				}
+			}
+			bucket.subList(keptCount, bucket.size()).clear();
+		}
+		size -= dueItems.size();
+		currentTick = targetTick + 1;
+		return dueItems;
+	}
+
+	/**
+	 * @return the number of items held
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	public Duration getTickDuration() {
+		return Duration.ofNanos(tickNanos);
+	}
+
+	public int getWheelSize() {
+		return mask + 1;
+	}
+
+	private long toTick(long nanos) {
+		return Math.max(nanos - startNanos, 0) / tickNanos;
+	}
+
+	private record Entry<T>(T item, long dueTick) {
+	}
+}
@@ -1,70 +1,311 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openclassrooms.tourguide.executor.BatchExecutor;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.model.User;
 
-public class Tracker extends Thread {
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Periodically tracks the location of every user.
+ * <p>
+ * A tick is scheduled at a fixed rate, every tickDuration. Once tracked, a user is held in a TimingWheel until the
+ * interval chosen by the TrackingIntervalPolicy has elapsed, so that users who move are tracked more often than users
+ * who do not. On each tick, the users due and the users never tracked are split into shards by userId hash. The shards
+ * are driven in parallel by a few threads of the tracker, at most MAX_PARALLEL_SHARDS, each of them dispatching the
+ * users of its shard to the BatchExecutor as any other batch, so that a tick never holds the whole pool and the batch
+ * endpoints and reward calculations keep their share of it. A tick stops at the end of its tickDuration: the users a
+ * shard has not tracked yet are carried over to the next tick, so that an overrun never delays the following ticks.
+ */
+public class Tracker {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
-	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private static final Duration DEFAULT_TRACKING_POLLING_INTERVAL = Duration.ofMinutes(5);
+	private static final int DEFAULT_SHARD_COUNT = 16;
+	// Shards driven at the same time, each driver only waiting for the users it dispatched to the BatchExecutor
+	private static final int MAX_PARALLEL_SHARDS = 8;
+	private static final int WHEEL_SIZE = 64;
+
+	private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+	private final ExecutorService shardExecutorService;
 	private final TourGuideService tourGuideService;
-	private boolean stop = false;
+	private final BatchExecutor batchExecutor;
+	private final TrackingIntervalPolicy trackingIntervalPolicy;
+	private final Duration tickDuration;
+	private final int shardCount;
+	private final TimingWheel<User> timingWheel;
+	private final Set<UUID> knownUserIds = ConcurrentHashMap.newKeySet();
+	private final Map<UUID, Duration> trackingIntervalByUserId = new ConcurrentHashMap<>();
+	// Users due and not tracked yet, per shard. A shard is only polled by its driver during a tick.
+	private final List<Deque<User>> pendingUsersByShard;
+	private final AtomicLong tickCount = new AtomicLong();
+	private final AtomicLong overrunCount = new AtomicLong();
+	private volatile boolean stop = false;
+	private boolean started = false;
 
 	public Tracker(TourGuideService tourGuideService) {
+		this(tourGuideService, BatchExecutor.getDefault());
+	}
+
+	public Tracker(TourGuideService tourGuideService, BatchExecutor batchExecutor) {
+		this(tourGuideService, batchExecutor, DEFAULT_TRACKING_POLLING_INTERVAL, DEFAULT_SHARD_COUNT);
+	}
+
+	/**
+	 * Creates a tracker that tracks every user every trackingPollingInterval, ticking once started.
+	 *
+	 * @param tourGuideService service providing the users and tracking their location
+	 * @param batchExecutor executor the users are tracked on
+	 * @param trackingPollingInterval time between two trackings of a user, also the time between the start of two ticks
+	 * @param shardCount number of shards the users are split into
+	 */
+	public Tracker(TourGuideService tourGuideService, BatchExecutor batchExecutor, Duration trackingPollingInterval, int shardCount) {
+		this(tourGuideService, batchExecutor, TrackingIntervalPolicy.fixed(trackingPollingInterval), trackingPollingInterval, shardCount);
+	}
+
+	/**
+	 * Creates a tracker ticking every minimum interval of the policy, once started.
+	 *
+	 * @param tourGuideService service providing the users and tracking their location
+	 * @param batchExecutor executor the users are tracked on
+	 * @param trackingIntervalPolicy chooses the time between two trackings of a user
+	 */
+	public Tracker(TourGuideService tourGuideService, BatchExecutor batchExecutor, TrackingIntervalPolicy trackingIntervalPolicy) {
+		this(tourGuideService, batchExecutor, trackingIntervalPolicy, trackingIntervalPolicy.getMinInterval(), DEFAULT_SHARD_COUNT);
+	}
+
+	/**
+	 * Creates the tracker. No user is tracked until start() is called.
+	 *
+	 * @param tourGuideService service providing the users and tracking their location
+	 * @param batchExecutor executor the users are tracked on
+	 * @param trackingIntervalPolicy chooses the time between two trackings of a user
+	 * @param tickDuration time between the start of two ticks, also the time budget of a tick
+	 * @param shardCount number of shards the users are split into
+	 */
+	public Tracker(TourGuideService tourGuideService, BatchExecutor batchExecutor, TrackingIntervalPolicy trackingIntervalPolicy,
+				   Duration tickDuration, int shardCount) {
+		if (tickDuration.isZero() || tickDuration.isNegative()) {
+			throw new IllegalArgumentException("Tick duration must be positive: " + tickDuration);
+		}
+		if (shardCount <= 0) {
+			throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+		}
 		this.tourGuideService = tourGuideService;
+		this.batchExecutor = batchExecutor;
+		this.trackingIntervalPolicy = trackingIntervalPolicy;
+		this.tickDuration = tickDuration;
+		this.shardCount = shardCount;
+		this.timingWheel = new TimingWheel<>(tickDuration, WHEEL_SIZE, System.nanoTime());
+		this.pendingUsersByShard = IntStream.range(0, shardCount)
+				.mapToObj(shard -> (Deque<User>) new ConcurrentLinkedDeque<User>())
+				.collect(Collectors.toList());
+		this.shardExecutorService = Executors.newFixedThreadPool(Math.min(shardCount, MAX_PARALLEL_SHARDS), new ShardThreadFactory());
+	}
 
-		executorService.submit(this);
+	/**
+	 * Schedules the first tick immediately. Does nothing if the tracker is already started or was stopped.
+	 */
+	public synchronized void start() {
+		if (started || stop) {
+			return;
+		}
+		started = true;
+		scheduledExecutorService.scheduleAtFixedRate(this::tick, 0, tickDuration.toNanos(), TimeUnit.NANOSECONDS);
 	}
 
 	/**
 	 * Assures to shut down the Tracker thread
 	 */
-	public void stopTracking() {
+	public synchronized void stopTracking() {
 		stop = true;
-		executorService.shutdownNow();
+		scheduledExecutorService.shutdownNow();
+		shardExecutorService.shutdownNow();
 	}
 
-	@Override
-	public void run() {
-		StopWatch stopWatch = new StopWatch();
-		while (true) {
-			if (Thread.currentThread().isInterrupted() || stop) {
-				logger.debug("Tracker stopping");
-				break;
+	private void tick() {
+		if (stop) {
+			return;
+		}
+		// An exception escaping a fixed-rate task would cancel all the following ticks
+		try {
+			long tickStart = System.nanoTime();
+			long tickDeadline = tickStart + tickDuration.toNanos();
+			int newUserCount = addPendingUsers(tickStart);
+			logger.debug("Begin Tracker tick. " + newUserCount + " new users, " + getPendingUserCount() + " users to track, "
+					+ timingWheel.size() + " users waiting for their next tracking.");
+
+			trackShards(tickStart, tickDeadline);
+
+			long elapsedNanos = System.nanoTime() - tickStart;
+			int carriedOverUserCount = getPendingUserCount();
+			tickCount.incrementAndGet();
+			if (carriedOverUserCount > 0 || elapsedNanos > tickDuration.toNanos()) {
+				overrunCount.incrementAndGet();
+				logger.warn("Tracker tick overran its duration of " + tickDuration.toSeconds() + " seconds: "
+						+ carriedOverUserCount + " users carried over to the next tick.");
 			}
+			logger.debug("Tracker Time Elapsed: " + TimeUnit.NANOSECONDS.toSeconds(elapsedNanos) + " seconds.");
+		} catch (InterruptedException e) {
+			logger.debug("Tracker stopping");
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			logger.error("Tracker tick failed: " + e.getMessage(), e);
+		}
+	}
 
-			List<User> users = tourGuideService.getAllUsers();
-			logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-			stopWatch.start();
-			users.forEach(u -> {
-				try {
-					tourGuideService.trackUserLocation(u);
-				} catch (ExecutionException e) {
-					throw new RuntimeException(e);
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
-				}
-			});
-			stopWatch.stop();
-			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-			stopWatch.reset();
+	/**
+	 * Adds to their shard the users due at the start of the tick and the users never tracked.
+	 *
+	 * @return the number of users never tracked
+	 */
+	private int addPendingUsers(long tickStart) {
+		List<User> pendingUsers = timingWheel.advance(tickStart);
+		int dueUserCount = pendingUsers.size();
+		for (User user : tourGuideService.getUserRegistry()) {
+			if (knownUserIds.add(user.getUserId())) {
+				pendingUsers.add(user);
+			}
+		}
+		pendingUsers.forEach(user -> pendingUsersByShard.get(getShard(user)).add(user));
+		return pendingUsers.size() - dueUserCount;
+	}
+
+	/**
+	 * Drives every shard on the threads of the tracker and waits until all of them are done.
+	 */
+	private void trackShards(long tickStart, long tickDeadline) throws InterruptedException {
+		List<Future<?>> trackedShards = new ArrayList<>(shardCount);
+		for (int shard = 0; shard < shardCount; shard++) {
+			int trackedShard = shard;
+			trackedShards.add(shardExecutorService.submit(() -> {
+				trackShard(trackedShard, tickStart, tickDeadline);
+				return null;
+			}));
+		}
+		for (Future<?> trackedShard : trackedShards) {
 			try {
-				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
-			} catch (InterruptedException e) {
-				break;
+				trackedShard.get();
+			} catch (ExecutionException e) {
+				logger.error("Tracking of a shard failed: " + e.getCause().getMessage(), e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Dispatches the pending users of the shard to the BatchExecutor, one item per user. The users reached once the
+	 * deadline of the tick has passed are put back into the shard, to be tracked first on the next tick.
+	 */
+	private void trackShard(int shard, long tickStart, long tickDeadline) throws InterruptedException {
+		Deque<User> pendingUsers = pendingUsersByShard.get(shard);
+		List<User> shardUsers = new ArrayList<>(pendingUsers.size());
+		for (User user = pendingUsers.poll(); user != null; user = pendingUsers.poll()) {
+			shardUsers.add(user);
+		}
+		batchExecutor.forEach(shardUsers, user -> {
+			if (stop || System.nanoTime() - tickDeadline >= 0) {
+				pendingUsers.add(user);
+				return;
 			}
+			trackUser(user, tickStart);
+		});
+	}
+
+	/**
+	 * Tracks the user, then holds it in the timing wheel until its next tracking.
+	 */
+	private void trackUser(User user, long tickStart) throws InterruptedException {
+		Duration previousInterval = trackingIntervalByUserId.get(user.getUserId());
+		Duration nextInterval = (previousInterval != null) ? previousInterval : trackingIntervalPolicy.getBaseInterval();
+		try {
+			VisitedLocation previousLocation = user.getLastVisitedLocation();
+			VisitedLocation latestLocation = tourGuideService.trackUserLocation(user);
+			nextInterval = trackingIntervalPolicy.nextInterval(previousLocation, latestLocation, previousInterval);
+		} catch (ExecutionException | RuntimeException e) {
+			logger.debug("Tracking of user " + user.getUserName() + " failed: " + e.getMessage());
 		}
+		trackingIntervalByUserId.put(user.getUserId(), nextInterval);
+		// Relative to the start of the tick, so that a user tracked every tickDuration is due on every tick
+		timingWheel.schedule(user, tickStart + nextInterval.toNanos());
+	}
+
+	/**
+	 * @return the shard of the user, derived from the hash of its userId
+	 */
+	public int getShard(User user) {
+		return Math.floorMod(user.getUserId().hashCode(), shardCount);
+	}
+
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	/**
+	 * @return the number of users due and not tracked yet
+	 */
+	public int getPendingUserCount() {
+		return pendingUsersByShard.stream().mapToInt(Deque::size).sum();
+	}
+
+	/**
+	 * @return the number of ticks completed
+	 */
+	public long getTickCount() {
+		return tickCount.get();
+	}
 
+	/**
+	 * @return the number of ticks that carried users over or lasted longer than their duration
+	 */
+	public long getOverrunCount() {
+		return overrunCount.get();
+	}
+
+	/**
+	 * @return the number of users waiting in the timing wheel for their next tracking
+	 */
+	public int getWaitingUserCount() {
+		return timingWheel.size();
+	}
+
+	/**
+	 * @return the interval chosen after the last tracking of the user, null if the user was never tracked
+	 */
+	public Duration getTrackingInterval(User user) {
+		return trackingIntervalByUserId.get(user.getUserId());
+	}
+
+	private static class ShardThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "tracker-shard-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
 	}
 }
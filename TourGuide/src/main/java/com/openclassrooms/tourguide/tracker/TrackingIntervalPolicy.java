@@ -0,0 +1,111 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import com.openclassrooms.tourguide.spatial.AttractionIndex;
+import com.openclassrooms.tourguide.spatial.GeoDistance;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Chooses when the location of a user is tracked again, from the movement observed by the last tracking:
+ * <ul>
+ *     <li>a user near an attraction is tracked again after minInterval, as a reward may be about to be granted,</li>
+ *     <li>a user who moved is tracked again after baseInterval,</li>
+ *     <li>a user who did not move is tracked less and less often, the previous interval being doubled up to maxInterval.</li>
+ * </ul>
+ */
+public class TrackingIntervalPolicy {
+	private static final Duration DEFAULT_MIN_INTERVAL = Duration.ofMinutes(1);
+	private static final Duration DEFAULT_BASE_INTERVAL = Duration.ofMinutes(5);
+	private static final Duration DEFAULT_MAX_INTERVAL = Duration.ofHours(1);
+	private static final double DEFAULT_NEAR_ATTRACTION_MILES = 10;
+	private static final double DEFAULT_STATIONARY_MILES = 0.1;
+
+	private final Supplier<AttractionIndex> attractionIndexSupplier;
+	private final Duration minInterval;
+	private final Duration baseInterval;
+	private final Duration maxInterval;
+	private final double nearAttractionMiles;
+	private final double stationaryMiles;
+
+	/**
+	 * @param attractionIndexSupplier provides the current attractions
+	 */
+	public TrackingIntervalPolicy(Supplier<AttractionIndex> attractionIndexSupplier) {
+		this(attractionIndexSupplier, DEFAULT_MIN_INTERVAL, DEFAULT_BASE_INTERVAL, DEFAULT_MAX_INTERVAL,
+				DEFAULT_NEAR_ATTRACTION_MILES, DEFAULT_STATIONARY_MILES);
+	}
+
+	/**
+	 * @param attractionIndexSupplier provides the current attractions, null to never consider a user near an attraction
+	 * @param minInterval interval of the users near an attraction
+	 * @param baseInterval interval of the users who moved, and first interval of a user
+	 * @param maxInterval longest interval of the users who do not move
+	 * @param nearAttractionMiles distance under which a user is near an attraction
+	 * @param stationaryMiles distance under which a user is considered not to have moved
+	 */
+	public TrackingIntervalPolicy(Supplier<AttractionIndex> attractionIndexSupplier, Duration minInterval, Duration baseInterval,
+								  Duration maxInterval, double nearAttractionMiles, double stationaryMiles) {
+		if (minInterval.isZero() || minInterval.isNegative()
+				|| baseInterval.compareTo(minInterval) < 0 || maxInterval.compareTo(baseInterval) < 0) {
+			throw new IllegalArgumentException("Intervals must be positive and ordered: min " + minInterval
+					+ ", base " + baseInterval + ", max " + maxInterval);
+		}
+		this.attractionIndexSupplier = attractionIndexSupplier;
+		this.minInterval = minInterval;
+		this.baseInterval = baseInterval;
+		this.maxInterval = maxInterval;
+		this.nearAttractionMiles = nearAttractionMiles;
+		this.stationaryMiles = stationaryMiles;
+	}
+
+	/**
+	 * Every user is tracked at the same interval, as with a plain polling loop.
+	 *
+	 * @param interval the tracking interval of every user
+	 * @return a policy that does not adapt the interval
+	 */
+	public static TrackingIntervalPolicy fixed(Duration interval) {
+		return new TrackingIntervalPolicy(null, interval, interval, interval, 0, 0);
+	}
+
+	/**
+	 * @param previousLocation location known before the last tracking, null for a user never tracked
+	 * @param latestLocation location given by the last tracking
+	 * @param previousInterval interval that led to the last tracking, null for a user never tracked
+	 * @return the time to wait before tracking the user again
+	 */
+	public Duration nextInterval(VisitedLocation previousLocation, VisitedLocation latestLocation, Duration previousInterval) {
+		if (minInterval.equals(maxInterval)) {
+			return minInterval;
+		}
+		if (isNearAttraction(latestLocation)) {
+			return minInterval;
+		}
+		if (previousLocation == null || previousInterval == null
+				|| GeoDistance.miles(previousLocation.location, latestLocation.location) > stationaryMiles) {
+			return baseInterval;
+		}
+		Duration backedOffInterval = previousInterval.compareTo(baseInterval) < 0 ? baseInterval : previousInterval.multipliedBy(2);
+		return backedOffInterval.compareTo(maxInterval) > 0 ? maxInterval : backedOffInterval;
+	}
+
+	public Duration getMinInterval() {
+		return minInterval;
+	}
+
+	public Duration getBaseInterval() {
+		return baseInterval;
+	}
+
+	public Duration getMaxInterval() {
+		return maxInterval;
+	}
+
+	private boolean isNearAttraction(VisitedLocation location) {
+		return attractionIndexSupplier != null
+				&& !attractionIndexSupplier.get().findWithin(location.location, nearAttractionMiles).isEmpty();
+	}
+}
@@ -3,10 +3,21 @@ package com.openclassrooms.tourguide.performance;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.junit.jupiter.api.Disabled;
@@ -14,12 +25,25 @@ import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.catalog.AttractionCatalog;
+import com.openclassrooms.tourguide.executor.BatchExecutor;
+import com.openclassrooms.tourguide.executor.BatchExecutor.BackpressurePolicy;
+import com.openclassrooms.tourguide.executor.BatchExecutor.ExecutionMode;
+import com.openclassrooms.tourguide.gateway.RewardCentralGateway;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.model.LocationRetentionPolicy;
 import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.VisitedLocationLog;
+import com.openclassrooms.tourguide.persistence.EventJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshotStore;
+import com.openclassrooms.tourguide.registry.UserRegistry;
 
 public class TestPerformance {
 
@@ -125,4 +149,252 @@ public class TestPerformance {
 		assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
 	}
 
+	/**
+	 *  This test compares the time needed to track the location and to calculate the rewards of the same users
+	 *  when the BatchExecutor runs on the platform thread pool and when it runs one virtual thread per user.
+	 * <p>
+	 *  When the runtime does not support virtual threads (before Java 21), the VIRTUAL run falls back to the platform thread pool,
+	 *  which the printed effective execution mode shows.
+	 */
+	@Test
+	@Disabled
+	// Users should be incremented up to 100,000, and each run finishes within 15 minutes
+	public void highVolumeTrackLocationAndGetRewards_platformVersusVirtualThreads() throws InterruptedException {
+		// ARRANGE
+		GpsUtil gpsUtil = new GpsUtil();
+		AttractionCatalog attractionCatalog = new AttractionCatalog(gpsUtil);
+		RewardCentralGateway rewardCentralGateway = new RewardCentralGateway(new RewardCentral());
+
+			// Data : set the amount of users to test the performance at different scale
+		InternalTestHelper.setInternalUserNumber(100000);
+		TourGuideService usersProvider = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()));
+		usersProvider.tracker.stopTracking();
+		List<User> allUsers = usersProvider.getAllUsers();
+		InternalTestHelper.setInternalUserNumber(0);
+
+		for (ExecutionMode executionMode : ExecutionMode.values()) {
+			BatchExecutor batchExecutor = new BatchExecutor(200, 200, 10000, BackpressurePolicy.CALLER_RUNS, 20, executionMode, 1000);
+				// A new reward points cache for each run, so that the second run does not benefit from the first one
+			RewardsService rewardsService = new RewardsService(attractionCatalog, rewardCentralGateway, new RewardPointsCache(), batchExecutor);
+			TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, batchExecutor);
+			tourGuideService.tracker.stopTracking();
+
+			// ACT
+			StopWatch trackStopWatch = new StopWatch();
+			trackStopWatch.start();
+			tourGuideService.trackUserLocationBatch(allUsers);
+			trackStopWatch.stop();
+
+			allUsers.forEach(User::resetRewardEvaluation);
+			StopWatch rewardsStopWatch = new StopWatch();
+			rewardsStopWatch.start();
+			rewardsService.calculateRewardsBatch(allUsers);
+			rewardsStopWatch.stop();
+			batchExecutor.shutdown();
+
+			System.out.println("highVolumeTrackLocationAndGetRewards (requested " + executionMode + ", effective "
+					+ batchExecutor.getExecutionMode() + "): Track Time Elapsed: "
+					+ TimeUnit.MILLISECONDS.toSeconds(trackStopWatch.getTime()) + " seconds, Rewards Time Elapsed: "
+					+ TimeUnit.MILLISECONDS.toSeconds(rewardsStopWatch.getTime()) + " seconds.");
+
+			// ASSERT
+			assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(trackStopWatch.getTime()));
+			assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(rewardsStopWatch.getTime()));
+		}
+	}
+
+	@Test
+	@Disabled
+	// Measured on 10,000 users tracked every 5 minutes for about 3.5 days, then extrapolated to 100,000 users
+	public void highVolumeLocationHistory_boundedVersusUnboundedRetention() {
+		// ARRANGE
+		int userNumber = 10000;
+		int locationsPerUser = 1000;
+		long trackingInterval = TimeUnit.MINUTES.toMillis(5);
+
+		long[] usedMemory = new long[2];
+		LocationRetentionPolicy[] policies = { LocationRetentionPolicy.unbounded(), new LocationRetentionPolicy(100, 24, 30) };
+		for (int run = 0; run < policies.length; run++) {
+			long memoryBefore = usedMemory();
+
+			// ACT
+			List<User> users = new ArrayList<>(userNumber);
+			for (int i = 0; i < userNumber; i++) {
+				User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com", policies[run]);
+				for (int j = 0; j < locationsPerUser; j++) {
+					user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(j % 180 - 90, j % 360 - 180),
+							new Date(j * trackingInterval)));
+					// As the rewards of the tracked location are calculated after each tracking
+					user.pollLocationsToEvaluateForRewards(1);
+				}
+				users.add(user);
+			}
+			usedMemory[run] = usedMemory() - memoryBefore;
+
+			System.out.println("highVolumeLocationHistory (" + policies[run].getMaxRawLocations() + " raw locations): "
+					+ users.get(0).getVisitedLocations().size() + " locations kept per user, "
+					+ usedMemory[run] / (1024 * 1024) + " MB for " + userNumber + " users, about "
+					+ usedMemory[run] * (100000 / userNumber) / (1024 * 1024) + " MB for 100,000 users.");
+			users.clear();
+		}
+		System.out.println("highVolumeLocationHistory: about "
+				+ (usedMemory[0] - usedMemory[1]) * (100000 / userNumber) / (1024 * 1024) + " MB saved for 100,000 users.");
+
+		// ASSERT
+		assertTrue(usedMemory[1] < usedMemory[0]);
+	}
+
+	@Test
+	@Disabled
+	// Measured on 10,000 users with a full history of 1,000 locations, then extrapolated to 100,000 users
+	public void highVolumeLocationHistory_objectVersusPackedStorage() {
+		// ARRANGE
+		int userNumber = 10000;
+		int locationsPerUser = 1000;
+
+		long[] usedHeap = new long[VisitedLocationLog.Storage.values().length];
+		for (VisitedLocationLog.Storage storage : VisitedLocationLog.Storage.values()) {
+			long heapBefore = usedMemory();
+			long directMemoryBefore = usedDirectMemory();
+
+			// ACT
+			List<User> users = new ArrayList<>(userNumber);
+			for (int i = 0; i < userNumber; i++) {
+				User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com",
+						LocationRetentionPolicy.unbounded(), storage);
+				for (int j = 0; j < locationsPerUser; j++) {
+					user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(j % 180 - 90, j % 360 - 180),
+							new Date(j * TimeUnit.MINUTES.toMillis(5))));
+				}
+				users.add(user);
+			}
+			usedHeap[storage.ordinal()] = usedMemory() - heapBefore;
+			long usedDirectMemory = usedDirectMemory() - directMemoryBefore;
+
+			System.out.println("highVolumeLocationHistory (" + storage + "): "
+					+ usedHeap[storage.ordinal()] / (1024 * 1024) + " MB of heap and " + usedDirectMemory / (1024 * 1024)
+					+ " MB off heap for " + userNumber + " users, about "
+					+ usedHeap[storage.ordinal()] * (100000 / userNumber) / (1024 * 1024) + " MB of heap and "
+					+ usedDirectMemory * (100000 / userNumber) / (1024 * 1024) + " MB off heap for 100,000 users.");
+			users.clear();
+		}
+
+		// ASSERT
+		assertTrue(usedHeap[VisitedLocationLog.Storage.PACKED_HEAP.ordinal()] < usedHeap[VisitedLocationLog.Storage.OBJECTS.ordinal()]);
+		assertTrue(usedHeap[VisitedLocationLog.Storage.PACKED_OFF_HEAP.ordinal()] < usedHeap[VisitedLocationLog.Storage.PACKED_HEAP.ordinal()]);
+	}
+
+	@Test
+	@Disabled
+	// Users should be incremented up to 100,000, and the generation finishes within 10 seconds
+	public void highVolumeInternalUserGeneration() {
+		// ARRANGE
+		int userNumber = 100000;
+		UserRegistry userRegistry = new UserRegistry();
+		InternalUserGenerator internalUserGenerator = new InternalUserGenerator(42L, false);
+		StopWatch stopWatch = new StopWatch();
+
+		// ACT
+		stopWatch.start();
+		internalUserGenerator.generate(userRegistry, userNumber);
+		stopWatch.stop();
+
+		System.out.println("highVolumeInternalUserGeneration: " + userNumber + " users generated in " + stopWatch.getTime() + " ms.");
+
+		// ASSERT
+		assertTrue(userRegistry.size() == userNumber);
+		assertTrue(TimeUnit.SECONDS.toMillis(10) >= stopWatch.getTime());
+	}
+
+	@Test
+	@Disabled
+	// Users should be incremented up to 100,000, and the snapshot is loaded back within 10 seconds
+	public void highVolumeUserSnapshot() throws IOException {
+		// ARRANGE
+		int userNumber = 100000;
+		Path snapshotDirectory = Files.createTempDirectory("tourguide-snapshot");
+		UserSnapshotStore userSnapshotStore = new UserSnapshotStore(snapshotDirectory.resolve("users.snapshot"), Duration.ofMinutes(5), true);
+		UserRegistry userRegistry = new UserRegistry();
+		new InternalUserGenerator(42L, false).generate(userRegistry, userNumber);
+		for (User user : userRegistry) {
+			VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+			for (int i = 0; i < 100; i++) {
+				user.addToVisitedLocations(new VisitedLocation(user.getUserId(), lastVisitedLocation.location,
+						new Date(lastVisitedLocation.timeVisited.getTime() + i * TimeUnit.MINUTES.toMillis(5))));
+			}
+		}
+		StopWatch writeStopWatch = new StopWatch();
+		StopWatch loadStopWatch = new StopWatch();
+
+		// ACT
+		writeStopWatch.start();
+		userSnapshotStore.write(userRegistry);
+		writeStopWatch.stop();
+		long snapshotSize = Files.size(userSnapshotStore.getSnapshotPath());
+		UserRegistry restoredRegistry = new UserRegistry();
+		loadStopWatch.start();
+		userSnapshotStore.load(restoredRegistry, attractionName -> null);
+		loadStopWatch.stop();
+		Files.delete(userSnapshotStore.getSnapshotPath());
+		Files.delete(snapshotDirectory);
+
+		System.out.println("highVolumeUserSnapshot: " + userNumber + " users, " + snapshotSize / (1024 * 1024) + " MB written in "
+				+ writeStopWatch.getTime() + " ms and loaded in " + loadStopWatch.getTime() + " ms.");
+
+		// ASSERT
+		assertTrue(restoredRegistry.size() == userNumber);
+		assertTrue(TimeUnit.SECONDS.toMillis(10) >= loadStopWatch.getTime());
+	}
+
+	@Test
+	@Disabled
+	// Users should be incremented up to 100,000, and every location is journaled and on disk within 1 minute
+	public void highVolumeEventJournal() throws Exception {
+		// ARRANGE
+		int userNumber = 100000;
+		Path journalDirectory = Files.createTempDirectory("tourguide-journal");
+		EventJournal eventJournal = new EventJournal(journalDirectory, 64 * 1024 * 1024, Duration.ofMillis(10), true);
+		UserRegistry userRegistry = new UserRegistry();
+		new InternalUserGenerator(42L, false).generate(userRegistry, userNumber);
+		BatchExecutor batchExecutor = BatchExecutor.getDefault();
+		List<CompletableFuture<Void>> durableEvents = Collections.synchronizedList(new ArrayList<>());
+		eventJournal.open();
+		StopWatch stopWatch = new StopWatch();
+
+		// ACT
+		stopWatch.start();
+		batchExecutor.forEach(new ArrayList<>(userRegistry.stream().toList()),
+				user -> durableEvents.add(eventJournal.appendLocation(user, user.getLastVisitedLocation())));
+		CompletableFuture.allOf(durableEvents.toArray(new CompletableFuture[0])).join();
+		stopWatch.stop();
+		eventJournal.close();
+		try (Stream<Path> files = Files.list(journalDirectory)) {
+			for (Path file : files.toList()) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(journalDirectory);
+
+		System.out.println("highVolumeEventJournal: " + userNumber + " location events durable in " + stopWatch.getTime()
+				+ " ms with " + eventJournal.getFlushCount() + " fsyncs.");
+
+		// ASSERT
+		assertTrue(eventJournal.getAppendedEventCount() == userNumber);
+		assertTrue(TimeUnit.MINUTES.toMillis(1) >= stopWatch.getTime());
+	}
+
+	private static long usedDirectMemory() {
+		return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+				.filter(bufferPool -> bufferPool.getName().equals("direct"))
+				.mapToLong(BufferPoolMXBean::getMemoryUsed)
+				.sum();
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
 }
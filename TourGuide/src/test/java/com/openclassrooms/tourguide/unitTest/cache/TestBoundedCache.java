@@ -0,0 +1,185 @@
+package com.openclassrooms.tourguide.unitTest.cache;
+
+import com.openclassrooms.tourguide.cache.BoundedCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestBoundedCache {
+
+	@Test
+	public void get_whenKeyAlreadyLoaded_shouldNotCallTheLoaderAgain() {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, null);
+		AtomicInteger loaderCalls = new AtomicInteger();
+
+		//ACT
+		int firstValue = cache.get("key", key -> loaderCalls.incrementAndGet());
+		int secondValue = cache.get("key", key -> loaderCalls.incrementAndGet());
+
+		//ASSERT
+		assertEquals(1, firstValue);
+		assertEquals(1, secondValue);
+		assertEquals(1, loaderCalls.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0.5, cache.getHitRatio());
+	}
+
+	@Test
+	public void put_whenMaximumSizeReached_shouldEvictLeastRecentlyUsedEntry() {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(2, Duration.ZERO);
+		cache.put("first", 1);
+		cache.put("second", 2);
+			//reading the first entry makes the second one the least recently used
+		cache.getIfPresent("first");
+
+		//ACT
+		cache.put("third", 3);
+
+		//ASSERT
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNotNull(cache.getIfPresent("first"));
+		assertNull(cache.getIfPresent("second"));
+		assertNotNull(cache.getIfPresent("third"));
+	}
+
+	@Test
+	public void getIfPresent_whenTimeToLiveElapsed_shouldReturnNull() throws InterruptedException {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, Duration.ofMillis(20));
+		cache.put("key", 1);
+
+		//ACT
+		Thread.sleep(40);
+
+		//ASSERT
+		assertNull(cache.getIfPresent("key"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void get_whenLoaderFails_shouldNotCacheAnythingAndLoadAgainOnNextCall() {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, null);
+
+		//ACT
+		assertThrows(IllegalStateException.class, () -> cache.get("key", key -> {
+			throw new IllegalStateException("pricing failed");
+		}));
+		int value = cache.get("key", key -> 1);
+
+		//ASSERT
+		assertEquals(1, value);
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void getAsync_whenKeyLoading_shouldShareTheLoadInFlight() {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, null);
+		AtomicInteger loaderCalls = new AtomicInteger();
+		CompletableFuture<Integer> remoteCall = new CompletableFuture<>();
+
+		//ACT
+		CompletableFuture<Integer> firstValue = cache.getAsync("key", key -> {
+			loaderCalls.incrementAndGet();
+			return remoteCall;
+		});
+		CompletableFuture<Integer> secondValue = cache.getAsync("key", key -> {
+			loaderCalls.incrementAndGet();
+			return new CompletableFuture<>();
+		});
+		boolean completedBeforeTheRemoteCall = firstValue.isDone();
+		remoteCall.complete(7);
+
+		//ASSERT
+		assertTrue(!completedBeforeTheRemoteCall);
+		assertSame(firstValue, secondValue);
+		assertEquals(7, secondValue.join());
+		assertEquals(1, loaderCalls.get());
+		assertEquals(1, cache.getCoalescedLoadCount());
+		assertEquals(7, cache.getAsync("key", key -> new CompletableFuture<>()).join());
+	}
+
+	@Test
+	public void getAsync_whenLoadFails_shouldNotCacheAnythingAndLoadAgainOnNextCall() {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, null);
+
+		//ACT
+		CompletableFuture<Integer> failedValue = cache.getAsync("key", key -> CompletableFuture.failedFuture(new IllegalStateException("unavailable")));
+		CompletableFuture<Integer> value = cache.getAsync("key", key -> CompletableFuture.completedFuture(3));
+
+		//ASSERT
+		assertTrue(failedValue.isCompletedExceptionally());
+		assertEquals(3, value.join());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void getAsync_whenCalledAsTheLoadFails_shouldLoadAgain() {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, null);
+		CompletableFuture<Integer> remoteCall = new CompletableFuture<>();
+		AtomicReference<CompletableFuture<Integer>> retriedValue = new AtomicReference<>();
+		CompletableFuture<Integer> failedValue = cache.getAsync("key", key -> remoteCall);
+			//runs as soon as the shared load fails, before anything else can happen
+		failedValue.whenComplete((value, e) -> retriedValue.set(cache.getAsync("key", key -> CompletableFuture.completedFuture(5))));
+
+		//ACT
+		remoteCall.completeExceptionally(new IllegalStateException("unavailable"));
+
+		//ASSERT
+		assertTrue(failedValue.isCompletedExceptionally());
+		assertEquals(5, retriedValue.get().join());
+		assertEquals(0, cache.getCoalescedLoadCount());
+	}
+
+	@Test
+	public void get_whenCalledAsAnAsyncLoadFails_shouldLoadAgain() {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, null);
+		AtomicReference<CompletableFuture<Integer>> retriedValue = new AtomicReference<>();
+		CompletableFuture<Integer> failedValue = cache.getAsync("key", key -> {
+			throw new IllegalStateException("unavailable");
+		});
+
+		//ACT
+		failedValue.whenComplete((value, e) -> retriedValue.set(CompletableFuture.completedFuture(cache.get("key", key -> 5))));
+
+		//ASSERT
+		assertTrue(failedValue.isCompletedExceptionally());
+		assertEquals(5, retriedValue.get().join());
+		assertEquals(5, cache.get("key", key -> 6));
+	}
+
+	@Test
+	public void getAsync_whenLoaderReturnsNull_shouldCompleteWithNullWithoutCachingIt() {
+		//ARRANGE
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, null);
+
+		//ACT
+		CompletableFuture<Integer> nullFuture = cache.getAsync("key", key -> null);
+		CompletableFuture<Integer> nullValue = cache.getAsync("key", key -> CompletableFuture.completedFuture(null));
+		CompletableFuture<Integer> value = cache.getAsync("key", key -> CompletableFuture.completedFuture(3));
+
+		//ASSERT
+		assertNull(nullFuture.join());
+		assertNull(nullValue.join());
+		assertEquals(3, value.join());
+		assertEquals(1, cache.size());
+	}
+}
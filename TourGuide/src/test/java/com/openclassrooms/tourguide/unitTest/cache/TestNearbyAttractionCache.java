@@ -0,0 +1,61 @@
+package com.openclassrooms.tourguide.unitTest.cache;
+
+import com.openclassrooms.tourguide.cache.NearbyAttractionCache;
+import com.openclassrooms.tourguide.catalog.AttractionSnapshot;
+import com.openclassrooms.tourguide.spatial.AttractionIndex;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestNearbyAttractionCache {
+
+	@Test
+	public void rankNearest_shouldMatchTheSearchOfTheWholeIndex() {
+		//ARRANGE
+		List<Attraction> attractions = new ArrayList<>(new GpsUtil().getAttractions());
+		attractions.add(new Attraction("Antimeridian East", "city", "state", 0.5, 179.9));
+		attractions.add(new Attraction("Antimeridian West", "city", "state", 0.5, -179.9));
+		attractions.add(new Attraction("North Pole", "city", "state", 89.9, 12));
+		AttractionSnapshot attractionSnapshot = new AttractionSnapshot(1, attractions, Instant.now());
+		AttractionIndex attractionIndex = attractionSnapshot.getAttractionIndex();
+		NearbyAttractionCache nearbyAttractionCache = new NearbyAttractionCache(1000, 1);
+		Random random = new Random(42);
+
+		//ACT & ASSERT
+		for (int i = 0; i < 2000; i++) {
+			Location location = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+			for (double radius : new double[] {50, 1000, Double.POSITIVE_INFINITY}) {
+				assertEquals(attractionIndex.rankNearest(location, 5, radius),
+						nearbyAttractionCache.rankNearest(attractionSnapshot, location, 5, radius));
+			}
+		}
+	}
+
+	@Test
+	public void rankNearest_whenSameCellAndCatalogVersion_shouldReuseTheCandidates() {
+		//ARRANGE
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		AttractionSnapshot attractionSnapshot = new AttractionSnapshot(1, attractions, Instant.now());
+		AttractionSnapshot refreshedSnapshot = new AttractionSnapshot(2, attractions, Instant.now());
+		NearbyAttractionCache nearbyAttractionCache = new NearbyAttractionCache(1000, 0.1);
+
+		//ACT
+		nearbyAttractionCache.rankNearest(attractionSnapshot, new Location(33.81, -117.91), 5, Double.POSITIVE_INFINITY);
+		nearbyAttractionCache.rankNearest(attractionSnapshot, new Location(33.82, -117.92), 5, Double.POSITIVE_INFINITY);
+		nearbyAttractionCache.rankNearest(refreshedSnapshot, new Location(33.82, -117.92), 5, Double.POSITIVE_INFINITY);
+
+		//ASSERT
+		assertEquals(1, nearbyAttractionCache.getHitCount());
+		assertEquals(2, nearbyAttractionCache.getMissCount());
+		assertEquals(2, nearbyAttractionCache.size());
+		assertEquals(1 / 3d, nearbyAttractionCache.getHitRatio(), 1e-9);
+	}
+}
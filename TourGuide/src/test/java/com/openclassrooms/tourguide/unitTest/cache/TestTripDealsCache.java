@@ -0,0 +1,94 @@
+package com.openclassrooms.tourguide.unitTest.cache;
+
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import org.junit.jupiter.api.Test;
+import tripPricer.Provider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTripDealsCache {
+
+	@Test
+	public void getTripDeals_whenRequestedConcurrently_shouldShareASinglePricingCall() throws Exception {
+		//ARRANGE
+		TripDealsCache tripDealsCache = new TripDealsCache(10, Duration.ofMinutes(1));
+		UUID userId = UUID.randomUUID();
+		List<Provider> providers = List.of(new Provider(UUID.randomUUID(), "Holiday Travels", 100));
+		AtomicInteger pricingCalls = new AtomicInteger();
+		CountDownLatch pricingStarted = new CountDownLatch(1);
+		CountDownLatch releasePricing = new CountDownLatch(1);
+		int requestCount = 8;
+		ExecutorService executorService = Executors.newFixedThreadPool(requestCount);
+
+		//ACT
+		List<Future<List<Provider>>> requests = new ArrayList<>();
+		for (int i = 0; i < requestCount; i++) {
+			requests.add(executorService.submit(() -> tripDealsCache.getTripDeals(userId, 2, 1, 7, 300, () -> {
+				pricingCalls.incrementAndGet();
+				pricingStarted.countDown();
+				try {
+					releasePricing.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return providers;
+			})));
+		}
+		assertTrue(pricingStarted.await(5, TimeUnit.SECONDS));
+			//lets the other requests reach the pricing in flight before it ends
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (tripDealsCache.getCoalescedLoadCount() < requestCount - 1 && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		releasePricing.countDown();
+		List<List<Provider>> results = new ArrayList<>();
+		for (Future<List<Provider>> request : requests) {
+			results.add(request.get(5, TimeUnit.SECONDS));
+		}
+		executorService.shutdown();
+
+		//ASSERT
+		assertEquals(1, pricingCalls.get());
+		assertEquals(requestCount - 1, tripDealsCache.getCoalescedLoadCount());
+		for (List<Provider> result : results) {
+			assertSame(results.get(0), result);
+			assertEquals(providers, result);
+		}
+	}
+
+	@Test
+	public void getTripDeals_whenRewardPointsChange_shouldPriceTheTripAgain() {
+		//ARRANGE
+		TripDealsCache tripDealsCache = new TripDealsCache(10, Duration.ofMinutes(1));
+		UUID userId = UUID.randomUUID();
+		AtomicInteger pricingCalls = new AtomicInteger();
+		Supplier<List<Provider>> tripPricer = () -> {
+			pricingCalls.incrementAndGet();
+			return List.of();
+		};
+
+		//ACT
+		tripDealsCache.getTripDeals(userId, 2, 1, 7, 300, tripPricer);
+		tripDealsCache.getTripDeals(userId, 2, 1, 7, 300, tripPricer);
+		tripDealsCache.getTripDeals(userId, 2, 1, 7, 400, tripPricer);
+
+		//ASSERT
+		assertEquals(2, pricingCalls.get());
+		assertEquals(2, tripDealsCache.size());
+		assertEquals(1, tripDealsCache.getHitCount());
+	}
+}
@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide.unitTest.catalog;
+
+import com.openclassrooms.tourguide.catalog.AttractionCatalog;
+import com.openclassrooms.tourguide.catalog.AttractionSnapshot;
+import gpsUtil.location.Attraction;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TestAttractionCatalog {
+
+	@Test
+	public void getSnapshot_whenRefreshIntervalNotElapsed_shouldNotCallTheSource() {
+		//ARRANGE
+		AtomicInteger sourceCalls = new AtomicInteger();
+		AttractionCatalog attractionCatalog = new AttractionCatalog(() -> {
+			sourceCalls.incrementAndGet();
+			return buildAttractions("Disneyland");
+		}, Duration.ofHours(1));
+
+		//ACT
+		AttractionSnapshot firstSnapshot = attractionCatalog.getSnapshot();
+		AttractionSnapshot secondSnapshot = attractionCatalog.getSnapshot();
+
+		//ASSERT
+		assertEquals(1, sourceCalls.get());
+		assertSame(firstSnapshot, secondSnapshot);
+		assertEquals(1, attractionCatalog.getVersion());
+	}
+
+	@Test
+	public void refresh_whenAttractionsUnchanged_shouldKeepVersionAndAttractionIds() {
+		//ARRANGE
+		AttractionCatalog attractionCatalog = new AttractionCatalog(() -> buildAttractions("Disneyland", "Jackson Hole"), Duration.ZERO);
+		AttractionSnapshot firstSnapshot = attractionCatalog.getSnapshot();
+
+		//ACT
+		AttractionSnapshot refreshedSnapshot = attractionCatalog.refresh();
+
+		//ASSERT
+		assertSame(firstSnapshot, refreshedSnapshot);
+		assertEquals(firstSnapshot.getAttractions().get(0).attractionId, refreshedSnapshot.getAttractions().get(0).attractionId);
+	}
+
+	@Test
+	public void getSnapshot_whenRefreshIntervalElapsedAndAttractionsChanged_shouldSwapToNewVersion() throws InterruptedException {
+		//ARRANGE
+		List<String> attractionNames = new ArrayList<>(List.of("Disneyland"));
+		AttractionCatalog attractionCatalog = new AttractionCatalog(() -> buildAttractions(attractionNames.toArray(new String[0])), Duration.ofMillis(1));
+		AttractionSnapshot firstSnapshot = attractionCatalog.getSnapshot();
+		attractionNames.add("Jackson Hole");
+		Thread.sleep(5);
+
+		//ACT
+		AttractionSnapshot refreshedSnapshot = attractionCatalog.getSnapshot();
+
+		//ASSERT
+		assertNotSame(firstSnapshot, refreshedSnapshot);
+		assertEquals(2, refreshedSnapshot.getVersion());
+		assertEquals(2, refreshedSnapshot.getAttractions().size());
+		//the attraction already known keeps its identifier
+		assertSame(firstSnapshot.getAttractions().get(0), refreshedSnapshot.getAttractions().get(0));
+	}
+
+	private static List<Attraction> buildAttractions(String... attractionNames) {
+		List<Attraction> attractions = new ArrayList<>();
+		for (int i = 0; i < attractionNames.length; i++) {
+			attractions.add(new Attraction(attractionNames[i], "city", "state", 10 * i, 20 * i));
+		}
+		return attractions;
+	}
+}
@@ -4,8 +4,10 @@ import com.jayway.jsonpath.JsonPath;
 import com.openclassrooms.tourguide.TourguideApplication;
 import com.openclassrooms.tourguide.controller.TourGuideController;
 import com.openclassrooms.tourguide.dto.NearByAttraction;
+import com.openclassrooms.tourguide.dto.UserBatchResult;
 import com.openclassrooms.tourguide.model.User;
 import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.registry.UserRegistry;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
@@ -28,6 +30,8 @@ import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest(classes = TourguideApplication.class)
@@ -218,4 +222,69 @@ public class TourGuideControllerUnitTest {
         verify(tourGuideService, times(1)).getUser(userName);
         verify(tourGuideService, times(1)).getTripDeals(userTest);
     }
+
+    @Test
+    public void getLocations_ShouldReturnTheResultOfEachUser() throws Exception {
+        //ARRANGE
+        URI uri = new URI("/batch/getLocation");
+
+        Location location = new Location(50.252525, 122.363636);
+        VisitedLocation visitedLocationTest = new VisitedLocation(UUID.randomUUID(), location, new Date());
+        List<String> userNames = List.of(userName, "unknownUser");
+
+        when(tourGuideService.getUserLocations(userNames)).thenReturn(List.of(
+                UserBatchResult.success(userName, visitedLocationTest),
+                UserBatchResult.failure("unknownUser", "Unknown user")));
+
+        //ACT
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post(uri)
+                        .content("[\"" + userName + "\", \"unknownUser\"]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        //ASSERT
+
+        String response = mvcResult.getResponse().getContentAsString();
+        assertThat(visitedLocationTest.location.longitude).isEqualTo(JsonPath.parse(response).read("$[0].result.location.longitude"));
+        assertThat("unknownUser").isEqualTo(JsonPath.parse(response).read("$[1].userName"));
+        assertThat("Unknown user").isEqualTo(JsonPath.parse(response).read("$[1].error"));
+
+        // Mocked calls
+        verify(tourGuideService, times(1)).getUserLocations(userNames);
+    }
+
+    @Test
+    public void streamLocations_ShouldWriteOneLinePerLocatedUser() throws Exception {
+        //ARRANGE
+        URI uri = new URI("/streamLocations");
+
+        User userTest = new User(UUID.randomUUID(), "userNameTest", "000-001", "email@test.com");
+        User neverLocatedUser = new User(UUID.randomUUID(), "neverLocated", "000-002", "email2@test.com");
+        Location location = new Location(50.252525, 122.363636);
+        userTest.addToVisitedLocations(new VisitedLocation(userTest.getUserId(), location, new Date()));
+        UserRegistry userRegistry = new UserRegistry();
+        userRegistry.add(userTest);
+        userRegistry.add(neverLocatedUser);
+
+        when(tourGuideService.getUserRegistry()).thenReturn(userRegistry);
+
+        //ACT
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.get(uri))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult mvcResult = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        //ASSERT
+
+        String[] lines = mvcResult.getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(1);
+        assertThat(userName).isEqualTo(JsonPath.parse(lines[0]).read("userName"));
+        assertThat(location.latitude).isEqualTo(JsonPath.parse(lines[0]).read("visitedLocation.location.latitude"));
+
+        // Mocked calls
+        verify(tourGuideService, times(1)).getUserRegistry();
+    }
 }
@@ -0,0 +1,146 @@
+package com.openclassrooms.tourguide.unitTest.executor;
+
+import com.openclassrooms.tourguide.executor.BatchExecutor;
+import com.openclassrooms.tourguide.executor.BatchExecutor.BackpressurePolicy;
+import com.openclassrooms.tourguide.executor.BatchExecutor.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestBatchExecutor {
+
+	@Test
+	public void forEach_shouldProcessEveryItemInChunks() throws InterruptedException {
+		//ARRANGE
+		BatchExecutor batchExecutor = new BatchExecutor(4, 4, 2, BackpressurePolicy.CALLER_RUNS, 10);
+		List<Integer> items = IntStream.range(0, 95).boxed().collect(Collectors.toList());
+		Set<Integer> processedItems = ConcurrentHashMap.newKeySet();
+
+		//ACT
+		batchExecutor.forEach(items, processedItems::add);
+		batchExecutor.shutdown();
+
+		//ASSERT
+		assertEquals(95, processedItems.size());
+		assertEquals(95, batchExecutor.getProcessedItemCount());
+		assertEquals(0, batchExecutor.getFailedItemCount());
+	}
+
+	@Test
+	public void forEach_whenAnItemFails_shouldStillProcessTheOthers() throws InterruptedException {
+		//ARRANGE
+		BatchExecutor batchExecutor = new BatchExecutor(2, 2, 100, BackpressurePolicy.BLOCK, 3);
+		List<Integer> items = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+		Set<Integer> processedItems = ConcurrentHashMap.newKeySet();
+
+		//ACT
+		batchExecutor.forEach(items, item -> {
+			if (item == 4) {
+				throw new IllegalStateException("item " + item + " failed");
+			}
+			processedItems.add(item);
+		});
+		batchExecutor.shutdown();
+
+		//ASSERT
+		assertEquals(9, processedItems.size());
+		assertEquals(1, batchExecutor.getFailedItemCount());
+			//the pool counts a task as completed slightly after the batch is released
+		long deadline = System.currentTimeMillis() + 5000;
+		while (batchExecutor.getCompletedTaskCount() < 4 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(4, batchExecutor.getCompletedTaskCount());
+	}
+
+	@Test
+	public void forEach_whenShutDown_shouldRejectTheItemsWithoutBlocking() throws InterruptedException {
+		//ARRANGE
+		BatchExecutor batchExecutor = new BatchExecutor(2, 2, 10, BackpressurePolicy.ABORT, 5);
+		batchExecutor.shutdown();
+
+		//ACT
+		batchExecutor.forEach(List.of(1, 2, 3, 4, 5, 6), item -> {
+		});
+
+		//ASSERT
+		assertEquals(0, batchExecutor.getProcessedItemCount());
+		assertEquals(6, batchExecutor.getFailedItemCount());
+	}
+
+	@Test
+	public void forEach_whenVirtualModeRequested_shouldProcessEveryItemWithTheSupportedMode() throws InterruptedException {
+		//ARRANGE
+		BatchExecutor batchExecutor = new BatchExecutor(2, 2, 10, BackpressurePolicy.CALLER_RUNS, 5, ExecutionMode.VIRTUAL, 3);
+		List<Integer> items = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+		Set<Integer> processedItems = ConcurrentHashMap.newKeySet();
+
+		//ACT
+		batchExecutor.forEach(items, processedItems::add);
+		batchExecutor.shutdown();
+
+		//ASSERT
+		ExecutionMode expectedExecutionMode = BatchExecutor.isVirtualThreadSupported() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
+		assertEquals(expectedExecutionMode, batchExecutor.getExecutionMode());
+		assertEquals(50, processedItems.size());
+		assertEquals(50, batchExecutor.getProcessedItemCount());
+		assertEquals(0, batchExecutor.getFailedItemCount());
+	}
+
+	@Test
+	public void forEach_whenQueueIsFullWithBlockPolicy_shouldWaitForRoomInTheQueue() throws InterruptedException {
+		//ARRANGE
+		BatchExecutor batchExecutor = new BatchExecutor(1, 1, 1, BackpressurePolicy.BLOCK, 1);
+		List<Integer> items = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+		Set<Integer> processedItems = ConcurrentHashMap.newKeySet();
+
+		//ACT
+		batchExecutor.forEach(items, item -> {
+			Thread.sleep(5);
+			processedItems.add(item);
+		});
+		batchExecutor.shutdown();
+
+		//ASSERT
+		assertEquals(10, processedItems.size());
+		assertEquals(1, batchExecutor.getLargestPoolSize());
+		assertEquals(1, batchExecutor.getChunkSize());
+	}
+
+	@Test
+	public void forEach_whenAnItemIsInterrupted_shouldStopProcessingItsChunk() throws InterruptedException {
+		//ARRANGE
+		BatchExecutor batchExecutor = new BatchExecutor(1, 1, 10, BackpressurePolicy.CALLER_RUNS, 5);
+		List<Integer> items = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+		Set<Integer> processedItems = ConcurrentHashMap.newKeySet();
+
+		//ACT
+		batchExecutor.forEach(items, item -> {
+			if (item == 2) {
+				throw new InterruptedException("item " + item + " interrupted");
+			}
+			processedItems.add(item);
+		});
+		batchExecutor.shutdown();
+
+		//ASSERT
+		assertEquals(Set.of(0, 1, 5, 6, 7, 8, 9), processedItems);
+		assertEquals(1, batchExecutor.getFailedItemCount());
+	}
+
+	@Test
+	public void constructor_whenChunkSizeOrMaxConcurrentCallsNotPositive_shouldThrowIllegalArgumentException() {
+		//ASSERT
+		assertThrows(IllegalArgumentException.class,
+				() -> new BatchExecutor(1, 1, 1, BackpressurePolicy.ABORT, 0));
+		assertThrows(IllegalArgumentException.class,
+				() -> new BatchExecutor(1, 1, 1, BackpressurePolicy.ABORT, 1, ExecutionMode.PLATFORM, 0));
+	}
+}
@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.unitTest.gateway;
+
+import com.openclassrooms.tourguide.gateway.RewardCentralGateway;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestRewardCentralGateway {
+
+	@Test
+	public void getAttractionRewardPoints_shouldNeverExceedMaxInFlightRequests() {
+		//ARRANGE
+		ConcurrencyTrackingRewardCentral rewardCentral = new ConcurrencyTrackingRewardCentral();
+		RewardCentralGateway rewardCentralGateway = new RewardCentralGateway(rewardCentral, 4);
+
+		//ACT
+		List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			rewardPoints.add(rewardCentralGateway.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID()));
+		}
+		rewardPoints.forEach(CompletableFuture::join);
+		rewardCentralGateway.shutdown();
+
+		//ASSERT
+		assertEquals(20, rewardCentral.calls.get());
+		assertTrue(rewardCentral.maxConcurrentCalls.get() <= 4);
+		assertTrue(rewardCentral.maxConcurrentCalls.get() > 1);
+		assertEquals(0, rewardCentralGateway.getInFlightRequestCount());
+	}
+
+	@Test
+	public void getAttractionRewardPoints_whenGatewayShutDown_shouldReturnFailedFuture() {
+		//ARRANGE
+		RewardCentralGateway rewardCentralGateway = new RewardCentralGateway(new ConcurrencyTrackingRewardCentral(), 2);
+		rewardCentralGateway.shutdown();
+
+		//ACT
+		CompletableFuture<Integer> rewardPoints = rewardCentralGateway.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+
+		//ASSERT
+		assertTrue(rewardPoints.isCompletedExceptionally());
+		assertEquals(0, rewardCentralGateway.getInFlightRequestCount());
+		assertEquals(2, rewardCentralGateway.getMaxInFlightRequests());
+		assertEquals(0, rewardCentralGateway.getCompletedRequestCount());
+	}
+
+	private static class ConcurrencyTrackingRewardCentral extends RewardCentral {
+		private final AtomicInteger calls = new AtomicInteger();
+		private final AtomicInteger concurrentCalls = new AtomicInteger();
+		private final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+
+		@Override
+		public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+			calls.incrementAndGet();
+			maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+			try {
+				TimeUnit.MILLISECONDS.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			concurrentCalls.decrementAndGet();
+			return 100;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide.unitTest.helper;
+
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.model.LocationRetentionPolicy;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserFactory;
+import com.openclassrooms.tourguide.model.VisitedLocationLog;
+import com.openclassrooms.tourguide.registry.UserRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestInternalUserGenerator {
+
+	@Test
+	public void generate_withTheSameSeed_shouldGenerateTheSameUsers() {
+		//ARRANGE
+		UserRegistry firstRegistry = new UserRegistry();
+		UserRegistry secondRegistry = new UserRegistry();
+
+		//ACT
+		CompletableFuture<Void> generated = new InternalUserGenerator(42L, false).generate(firstRegistry, 1000);
+		new InternalUserGenerator(42L, false).generate(secondRegistry, 1000);
+		User otherSeedUser = new InternalUserGenerator(43L, false).generateUser(7);
+
+		//ASSERT
+		assertTrue(generated.isDone());
+		assertEquals(1000, firstRegistry.size());
+		for (User user : firstRegistry) {
+			User sameUser = secondRegistry.getByName(user.getUserName());
+			assertEquals(user.getUserId(), sameUser.getUserId());
+			assertEquals(4, user.getUserId().version());
+			assertEquals(3, user.getVisitedLocations().size());
+			for (int i = 0; i < 3; i++) {
+				assertEquals(user.getVisitedLocations().get(i).location.latitude, sameUser.getVisitedLocations().get(i).location.latitude);
+				assertEquals(user.getVisitedLocations().get(i).location.longitude, sameUser.getVisitedLocations().get(i).location.longitude);
+				assertTrue(Math.abs(user.getVisitedLocations().get(i).location.latitude) <= 85.05112878);
+			}
+		}
+		assertNotEquals(firstRegistry.getByName("internalUser7").getUserId(), otherSeedUser.getUserId());
+	}
+
+	@Test
+	public void generate_inBackground_shouldFillTheRegistryOnceCompleted() throws Exception {
+		//ARRANGE
+		UserRegistry userRegistry = new UserRegistry();
+		InternalUserGenerator internalUserGenerator = new InternalUserGenerator(null, true);
+
+		//ACT
+		CompletableFuture<Void> generated = internalUserGenerator.generate(userRegistry, 5000);
+		generated.get(1, TimeUnit.MINUTES);
+
+		//ASSERT
+		assertTrue(internalUserGenerator.isInBackground());
+		assertEquals(5000, userRegistry.size());
+		assertEquals(internalUserGenerator.generateUser(42).getUserId(), userRegistry.getByName("internalUser42").getUserId());
+	}
+
+	@Test
+	public void generateUser_shouldCreateTheUserWithTheFactoryPolicy() {
+		//ARRANGE
+		LocationRetentionPolicy locationRetentionPolicy = new LocationRetentionPolicy(10, 24, 30);
+		InternalUserGenerator internalUserGenerator = new InternalUserGenerator(42L, false, new UserFactory(locationRetentionPolicy, VisitedLocationLog.Storage.OBJECTS));
+
+		//ACT
+		User user = internalUserGenerator.generateUser(7);
+
+		//ASSERT
+		assertSame(locationRetentionPolicy, user.getLocationRetentionPolicy());
+		assertEquals(new InternalUserGenerator(42L, false).generateUser(7).getUserId(), user.getUserId());
+	}
+
+	@Test
+	public void generateUser_shouldNotShiftTheRandomValuesOfTheUserBefore() {
+		//ARRANGE
+		InternalUserGenerator internalUserGenerator = new InternalUserGenerator(42L, false);
+
+		//ACT
+		List<User> users = IntStream.range(0, 100).mapToObj(internalUserGenerator::generateUser).collect(Collectors.toList());
+
+		//ASSERT
+		for (int i = 0; i + 1 < users.size(); i++) {
+			UUID userId = users.get(i).getUserId();
+			UUID nextUserId = users.get(i + 1).getUserId();
+				//the first draw of a user must not be the second one of the user before, the bits kept by both halves of the UUID being compared
+			assertNotEquals(0, (nextUserId.getMostSignificantBits() ^ userId.getLeastSignificantBits()) & ~0xC00000000000F000L);
+		}
+	}
+}
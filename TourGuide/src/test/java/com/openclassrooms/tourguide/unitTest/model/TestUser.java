@@ -0,0 +1,182 @@
+package com.openclassrooms.tourguide.unitTest.model;
+
+import com.openclassrooms.tourguide.model.LocationRetentionPolicy;
+import com.openclassrooms.tourguide.model.LocationSummary;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUser {
+
+	@Test
+	public void addUserReward_whenAttractionAlreadyRewarded_shouldNotAddIt() {
+		//ARRANGE
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+
+		//ACT
+		boolean firstAdded = user.addUserReward(new UserReward(visitedLocation, attraction, 100));
+		boolean secondAdded = user.addUserReward(new UserReward(visitedLocation, attraction, 200));
+
+		//ASSERT
+		assertTrue(firstAdded);
+		assertFalse(secondAdded);
+		assertTrue(user.isAttractionRewarded(attraction.attractionId));
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(100, user.getUserRewards().get(0).getRewardPoints());
+		assertEquals(100, user.getCumulativeRewardPoints());
+	}
+
+	@Test
+	public void addUserReward_whenCalledConcurrently_shouldRewardEachAttractionOnce() throws InterruptedException {
+		//ARRANGE
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Attraction> attractions = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			attractions.add(new Attraction("attraction " + i, "city", "state", i, i));
+		}
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+		CountDownLatch startSignal = new CountDownLatch(1);
+
+		//ACT
+		for (int thread = 0; thread < 8; thread++) {
+			executorService.execute(() -> {
+				try {
+					startSignal.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (Attraction attraction : attractions) {
+					user.addUserReward(new UserReward(new VisitedLocation(user.getUserId(), attraction, new Date()), attraction, 1));
+				}
+			});
+		}
+		startSignal.countDown();
+		executorService.shutdown();
+		executorService.awaitTermination(1, TimeUnit.MINUTES);
+
+		//ASSERT
+		assertEquals(attractions.size(), user.getUserRewards().size());
+	}
+
+	@Test
+	public void addToVisitedLocations_shouldCompactEvaluatedLocationsIntoSummaries() {
+		//ARRANGE
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com", new LocationRetentionPolicy(10, 2, 1));
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		user.addUserReward(new UserReward(new VisitedLocation(user.getUserId(), attraction, new Date()), attraction, 100));
+		// Four locations per hour over ten hours of the same day
+		long start = 1_700_006_400_000L;
+		for (int i = 0; i < 40; i++) {
+			user.addToVisitedLocations(visitedLocation(user, i, start + i * 15 * 60 * 1000L));
+		}
+
+		//ACT
+		List<VisitedLocation> polledLocations = user.pollLocationsToEvaluateForRewards(1);
+		user.addToVisitedLocations(visitedLocation(user, 40, start + 40 * 15 * 60 * 1000L));
+		List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+		List<LocationSummary> summaries = user.getLocationSummaries();
+
+		//ASSERT
+		assertEquals(40, polledLocations.size());
+		// Hours 0 to 5 merged into one daily summary, hours 6 and 7 kept hourly, the last 10 locations kept as they are
+		assertEquals(3, summaries.size());
+		assertEquals(24, summaries.get(0).getLocationCount());
+		assertEquals(0, summaries.get(0).visitedLocation.location.latitude);
+		assertEquals(4, summaries.get(1).getLocationCount());
+		assertEquals(24, summaries.get(1).visitedLocation.location.latitude);
+		assertEquals(3, summaries.get(2).getLocationCount());
+		assertEquals(13, visitedLocations.size());
+		assertEquals(31, visitedLocations.get(3).location.latitude);
+		assertEquals(40, user.getLastVisitedLocation().location.latitude);
+		assertEquals(1, user.getUserRewards().size());
+		assertTrue(user.isAttractionRewarded(attraction.attractionId));
+	}
+
+	@Test
+	public void addToVisitedLocations_shouldNotCompactLocationsNotEvaluatedForRewards() {
+		//ARRANGE
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com", new LocationRetentionPolicy(10, 2, 1));
+
+		//ACT
+		for (int i = 0; i < 30; i++) {
+			user.addToVisitedLocations(visitedLocation(user, i, i));
+		}
+		List<VisitedLocation> visitedLocationsBeforePoll = user.getVisitedLocations();
+		List<VisitedLocation> polledLocations = user.pollLocationsToEvaluateForRewards(1);
+		List<VisitedLocation> polledAgainLocations = user.pollLocationsToEvaluateForRewards(1);
+
+		//ASSERT
+		assertEquals(30, visitedLocationsBeforePoll.size());
+		assertEquals(30, polledLocations.size());
+		assertTrue(polledAgainLocations.isEmpty());
+		assertEquals(11, user.getVisitedLocations().size());
+		assertEquals(20, user.getLocationSummaries().get(0).getLocationCount());
+	}
+
+	@Test
+	public void pollLocationsToEvaluateForRewards_whenRulesChanged_shouldReturnSummariesAndRawLocations() {
+		//ARRANGE
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com", new LocationRetentionPolicy(5, 10, 10));
+		for (int i = 0; i < 20; i++) {
+			user.addToVisitedLocations(visitedLocation(user, i, i * 60 * 60 * 1000L));
+		}
+		user.pollLocationsToEvaluateForRewards(1);
+		user.addToVisitedLocations(visitedLocation(user, 20, 20 * 60 * 60 * 1000L));
+
+		//ACT
+		List<VisitedLocation> sameRulesLocations = user.pollLocationsToEvaluateForRewards(1);
+		List<VisitedLocation> newRulesLocations = user.pollLocationsToEvaluateForRewards(2);
+
+		//ASSERT
+		assertEquals(1, sameRulesLocations.size());
+		assertEquals(20, sameRulesLocations.get(0).location.latitude);
+		// One daily and 10 hourly summaries, followed by the 5 locations kept as they are
+		List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+		assertEquals(user.getLocationSummaries().size() + 5, newRulesLocations.size());
+		assertEquals(visitedLocations.size(), newRulesLocations.size());
+		for (int i = 0; i < visitedLocations.size(); i++) {
+			assertEquals(visitedLocations.get(i).location.latitude, newRulesLocations.get(i).location.latitude);
+			assertEquals(visitedLocations.get(i).timeVisited, newRulesLocations.get(i).timeVisited);
+		}
+		assertEquals(20, newRulesLocations.get(newRulesLocations.size() - 1).location.latitude);
+	}
+
+	@Test
+	public void unboundedPolicy_shouldKeepEveryLocation() {
+		//ARRANGE
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com", LocationRetentionPolicy.unbounded());
+
+		//ACT
+		for (int i = 0; i < 1000; i++) {
+			user.addToVisitedLocations(visitedLocation(user, i, i));
+		}
+		user.pollLocationsToEvaluateForRewards(1);
+		user.addToVisitedLocations(visitedLocation(user, 1000, 1000));
+
+		//ASSERT
+		assertEquals(1001, user.getVisitedLocations().size());
+		assertTrue(user.getLocationSummaries().isEmpty());
+	}
+
+	private VisitedLocation visitedLocation(User user, int index, long time) {
+		return new VisitedLocation(user.getUserId(), new Location(index, 0), new Date(time));
+	}
+}
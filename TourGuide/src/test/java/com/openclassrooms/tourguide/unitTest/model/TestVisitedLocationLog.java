@@ -0,0 +1,196 @@
+package com.openclassrooms.tourguide.unitTest.model;
+
+import com.openclassrooms.tourguide.model.VisitedLocationLog;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestVisitedLocationLog {
+
+	private final UUID userId = UUID.randomUUID();
+
+	@Test
+	public void view_shouldNotChangeWithLaterAppendsNorClear() {
+		//ARRANGE
+		VisitedLocationLog visitedLocationLog = new VisitedLocationLog();
+		for (int i = 0; i < 100; i++) {
+			visitedLocationLog.append(visitedLocation(i));
+		}
+
+		//ACT
+		List<VisitedLocation> view = visitedLocationLog.view();
+		List<VisitedLocation> viewFrom = visitedLocationLog.viewFrom(90);
+		visitedLocationLog.append(visitedLocation(100));
+		visitedLocationLog.clear();
+
+		//ASSERT
+		assertEquals(100, view.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, view.get(i).location.latitude);
+		}
+		assertEquals(10, viewFrom.size());
+		assertEquals(90, viewFrom.get(0).location.latitude);
+		assertThrows(UnsupportedOperationException.class, () -> view.add(visitedLocation(0)));
+		assertTrue(visitedLocationLog.isEmpty());
+		assertNull(visitedLocationLog.getLast());
+		assertTrue(visitedLocationLog.viewFrom(5).isEmpty());
+	}
+
+	@Test
+	public void getLast_shouldReturnTheLastAppendedLocation() {
+		//ARRANGE
+		VisitedLocationLog visitedLocationLog = new VisitedLocationLog();
+		VisitedLocation lastVisitedLocation = visitedLocation(2);
+
+		//ACT
+		visitedLocationLog.append(visitedLocation(1));
+		visitedLocationLog.append(lastVisitedLocation);
+
+		//ASSERT
+		assertSame(lastVisitedLocation, visitedLocationLog.getLast());
+		assertEquals(2, visitedLocationLog.size());
+	}
+
+	@Test
+	public void view_whileAppending_shouldAlwaysBeAConsistentPrefix() throws InterruptedException {
+		for (VisitedLocationLog.Storage storage : VisitedLocationLog.Storage.values()) {
+			//ARRANGE
+			VisitedLocationLog visitedLocationLog = new VisitedLocationLog(userId, storage);
+			AtomicBoolean writing = new AtomicBoolean(true);
+			AtomicReference<String> inconsistency = new AtomicReference<>();
+			Thread reader = new Thread(() -> {
+				while (writing.get()) {
+					List<VisitedLocation> view = visitedLocationLog.view();
+					for (int i = 0; i < view.size(); i++) {
+						if (view.get(i) == null || view.get(i).location.latitude != i) {
+							inconsistency.set("unexpected location at " + i + " of " + view.size());
+						}
+					}
+				}
+			});
+
+			//ACT
+			reader.start();
+			for (int i = 0; i < 20_000; i++) {
+				visitedLocationLog.append(visitedLocation(i));
+			}
+			writing.set(false);
+			reader.join();
+
+			//ASSERT
+			assertNull(inconsistency.get());
+			assertEquals(20_000, visitedLocationLog.size());
+		}
+	}
+
+	@Test
+	public void discardBefore_shouldKeepSequencesAndEarlierViews() {
+		//ARRANGE
+		VisitedLocationLog visitedLocationLog = new VisitedLocationLog();
+		for (int i = 0; i < 100; i++) {
+			visitedLocationLog.append(visitedLocation(i));
+		}
+		List<VisitedLocation> view = visitedLocationLog.view();
+
+		//ACT
+		visitedLocationLog.discardBefore(70);
+		visitedLocationLog.append(visitedLocation(100));
+
+		//ASSERT
+		assertEquals(100, view.size());
+		assertEquals(0, view.get(0).location.latitude);
+		assertEquals(70, visitedLocationLog.getHeadSequence());
+		assertEquals(101, visitedLocationLog.getEndSequence());
+		assertEquals(31, visitedLocationLog.size());
+		assertEquals(70, visitedLocationLog.view().get(0).location.latitude);
+		assertEquals(100, visitedLocationLog.getLast().location.latitude);
+		assertEquals(11, visitedLocationLog.viewFrom(90).size());
+		assertEquals(31, visitedLocationLog.viewFrom(0).size());
+	}
+
+	@Test
+	public void packedStorage_shouldMaterializeTheAppendedValues() {
+		for (VisitedLocationLog.Storage storage : VisitedLocationLog.Storage.values()) {
+			//ARRANGE
+			VisitedLocationLog visitedLocationLog = new VisitedLocationLog(userId, storage);
+			VisitedLocation appendedLocation = new VisitedLocation(userId, new Location(48.858844, 2.294351), new Date(1_700_000_000_123L));
+
+			//ACT
+			for (int i = 0; i < 40; i++) {
+				visitedLocationLog.append(visitedLocation(i));
+			}
+			visitedLocationLog.append(appendedLocation);
+			visitedLocationLog.discardBefore(35);
+			VisitedLocation readLocation = visitedLocationLog.getLast();
+
+			//ASSERT
+			assertEquals(storage, visitedLocationLog.getStorage());
+			assertEquals(userId, readLocation.userId);
+			assertEquals(48.858844, readLocation.location.latitude);
+			assertEquals(2.294351, readLocation.location.longitude);
+			assertEquals(1_700_000_000_123L, readLocation.timeVisited.getTime());
+			assertEquals(6, visitedLocationLog.size());
+			assertEquals(35, visitedLocationLog.view().get(0).location.latitude);
+		}
+	}
+
+	@Test
+	public void packedStorage_shouldGrowTheChunksWithTheHistory() {
+		for (VisitedLocationLog.Storage storage : List.of(VisitedLocationLog.Storage.PACKED_HEAP, VisitedLocationLog.Storage.PACKED_OFF_HEAP)) {
+			//ARRANGE
+			VisitedLocationLog visitedLocationLog = new VisitedLocationLog(userId, storage);
+			for (int i = 0; i < 3; i++) {
+				visitedLocationLog.append(visitedLocation(i));
+			}
+			long shortHistoryBytes = visitedLocationLog.getPackedCapacityBytes();
+			List<VisitedLocation> shortHistoryView = visitedLocationLog.view();
+
+			//ACT
+			for (int i = 3; i < 70; i++) {
+				visitedLocationLog.append(visitedLocation(i));
+			}
+			List<VisitedLocation> longHistoryView = visitedLocationLog.view();
+
+			//ASSERT
+				// Room for 4 locations of 24 bytes, rather than a whole chunk of 32
+			assertEquals(96, shortHistoryBytes);
+				// Two full chunks of 32 locations, and a third one grown to 8 locations
+			assertEquals((32 + 32 + 8) * 24, visitedLocationLog.getPackedCapacityBytes());
+			assertEquals(3, shortHistoryView.size());
+			assertEquals(2, shortHistoryView.get(2).location.latitude);
+			assertEquals(70, longHistoryView.size());
+			for (int i = 0; i < 70; i++) {
+				assertEquals(i, longHistoryView.get(i).location.latitude);
+			}
+		}
+	}
+
+	@Test
+	public void getPackedCapacityBytes_whenObjectStorage_shouldBeZero() {
+		//ARRANGE
+		VisitedLocationLog visitedLocationLog = new VisitedLocationLog(userId, VisitedLocationLog.Storage.OBJECTS);
+
+		//ACT
+		visitedLocationLog.append(visitedLocation(0));
+
+		//ASSERT
+		assertEquals(VisitedLocationLog.Storage.OBJECTS, VisitedLocationLog.DEFAULT_STORAGE);
+		assertEquals(0, visitedLocationLog.getPackedCapacityBytes());
+	}
+
+	private VisitedLocation visitedLocation(int index) {
+		return new VisitedLocation(userId, new Location(index, 0), new Date());
+	}
+}
@@ -0,0 +1,203 @@
+package com.openclassrooms.tourguide.unitTest.persistence;
+
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.persistence.EventJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshotStore;
+import com.openclassrooms.tourguide.registry.UserRegistry;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestEventJournal {
+
+	@TempDir
+	Path journalDirectory;
+
+	@Test
+	public void replay_shouldApplyTheEventsAppendedBeforeRestart() throws Exception {
+		//ARRANGE
+		UserRegistry userRegistry = users(20);
+		EventJournal eventJournal = new EventJournal(journalDirectory, 1 << 20, Duration.ofMillis(5), true);
+		eventJournal.open();
+		Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		List<CompletableFuture<Void>> durableEvents = new ArrayList<>();
+
+		//ACT
+		for (User user : userRegistry) {
+			executorService.execute(() -> {
+				for (int i = 0; i < 50; i++) {
+					VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(i, i), new Date(1000L + i));
+					user.addToVisitedLocations(visitedLocation);
+					CompletableFuture<Void> durableEvent = eventJournal.appendLocation(user, visitedLocation);
+					synchronized (durableEvents) {
+						durableEvents.add(durableEvent);
+					}
+				}
+			});
+		}
+		executorService.shutdown();
+		executorService.awaitTermination(1, TimeUnit.MINUTES);
+		User rewardedUser = userRegistry.getByName("user3");
+		durableEvents.add(eventJournal.appendReward(rewardedUser, new UserReward(rewardedUser.getLastVisitedLocation(), disneyland, 100)));
+		CompletableFuture.allOf(durableEvents.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+		eventJournal.close();
+
+		UserRegistry restartedRegistry = copyWithoutHistory(userRegistry);
+		Attraction restartedDisneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		EventJournal restartedJournal = new EventJournal(journalDirectory, 1 << 20, Duration.ofMillis(5), true);
+		restartedJournal.open();
+		int appliedEventCount = restartedJournal.replay(restartedRegistry, name -> restartedDisneyland);
+		int reappliedEventCount = restartedJournal.replay(restartedRegistry, name -> restartedDisneyland);
+		restartedJournal.close();
+
+		//ASSERT
+		assertEquals(20 * 50 + 1, eventJournal.getAppendedEventCount());
+		// Group commit: far fewer fsyncs than events
+		assertTrue(eventJournal.getFlushCount() < eventJournal.getAppendedEventCount());
+		assertEquals(20 * 50 + 1, appliedEventCount);
+		assertEquals(0, reappliedEventCount);
+		for (User user : restartedRegistry) {
+			assertEquals(50, user.getVisitedLocations().size());
+			assertEquals(49, user.getLastVisitedLocation().location.latitude);
+		}
+		User restartedRewardedUser = restartedRegistry.getByName("user3");
+		assertEquals(1, restartedRewardedUser.getUserRewards().size());
+		assertSame(restartedDisneyland, restartedRewardedUser.getUserRewards().get(0).attraction);
+		assertEquals(100, restartedRewardedUser.getUserRewards().get(0).getRewardPoints());
+	}
+
+	@Test
+	public void replay_whenLastRecordTorn_shouldApplyTheRecordsBeforeIt() throws IOException {
+		//ARRANGE
+		UserRegistry userRegistry = users(1);
+		User user = userRegistry.getByName("user0");
+		EventJournal eventJournal = new EventJournal(journalDirectory, 1 << 20, Duration.ofHours(1), true);
+		eventJournal.open();
+		for (int i = 0; i < 10; i++) {
+			eventJournal.appendLocation(user, new VisitedLocation(user.getUserId(), new Location(i, i), new Date(1000L + i)));
+		}
+		eventJournal.close();
+		Path segment = segments().get(0);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 5);
+		}
+
+		//ACT
+		UserRegistry restartedRegistry = copyWithoutHistory(userRegistry);
+		int appliedEventCount = new EventJournal(journalDirectory, 1 << 20, Duration.ofHours(1), true)
+				.replay(restartedRegistry, name -> null);
+
+		//ASSERT
+		assertEquals(9, appliedEventCount);
+		assertEquals(8, restartedRegistry.getByName("user0").getLastVisitedLocation().location.latitude);
+	}
+
+	@Test
+	public void checkpoint_shouldRotateAndDeleteTheSegmentsSavedByTheSnapshot() throws IOException {
+		//ARRANGE
+		UserRegistry userRegistry = users(3);
+		EventJournal eventJournal = new EventJournal(journalDirectory.resolve("journal"), 200, Duration.ofHours(1), true);
+		UserSnapshotStore userSnapshotStore = new UserSnapshotStore(journalDirectory.resolve("users.snapshot"), Duration.ofHours(1), true);
+		eventJournal.open();
+		for (User user : userRegistry) {
+			for (int i = 0; i < 10; i++) {
+				eventJournal.appendLocation(user, new VisitedLocation(user.getUserId(), new Location(i, i), new Date(1000L + i)));
+				eventJournal.flush();
+			}
+		}
+		long segmentNumberBeforeCheckpoint = eventJournal.getSegmentNumber();
+
+		//ACT
+		userSnapshotStore.checkpoint(userRegistry, eventJournal);
+		User user = userRegistry.getByName("user0");
+		eventJournal.appendLocation(user, new VisitedLocation(user.getUserId(), new Location(42, 42), new Date(5000L)));
+		eventJournal.close();
+
+		//ASSERT
+		assertTrue(segmentNumberBeforeCheckpoint > 0);
+		assertEquals(segmentNumberBeforeCheckpoint + 1, eventJournal.getSegmentNumber());
+		try (Stream<Path> files = Files.list(journalDirectory.resolve("journal"))) {
+			assertEquals(1, files.count());
+		}
+		assertEquals(1, new EventJournal(journalDirectory.resolve("journal"), 200, Duration.ofHours(1), true)
+				.replay(userRegistry, name -> null));
+		assertFalse(EventJournal.disabled().isEnabled());
+		assertEquals(0, EventJournal.disabled().replay(userRegistry, name -> null));
+		assertThrows(IllegalArgumentException.class, () -> new EventJournal(journalDirectory, 0, Duration.ofSeconds(1), true));
+	}
+
+	@Test
+	public void append_whenJournalNotOpenOrClosed_shouldDropTheEvents() throws IOException {
+		//ARRANGE
+		UserRegistry userRegistry = users(1);
+		User user = userRegistry.getByName("user0");
+		EventJournal eventJournal = new EventJournal(journalDirectory, 1 << 20, Duration.ofHours(1), true);
+
+		//ACT
+		CompletableFuture<Void> appendedBeforeOpen = eventJournal.appendLocation(user, new VisitedLocation(user.getUserId(), new Location(1, 1), new Date(1000L)));
+		eventJournal.open();
+		CompletableFuture<Void> appendedWhileOpen = eventJournal.appendLocation(user, new VisitedLocation(user.getUserId(), new Location(2, 2), new Date(2000L)));
+		eventJournal.close();
+		CompletableFuture<Void> appendedAfterClose = eventJournal.appendLocation(user, new VisitedLocation(user.getUserId(), new Location(3, 3), new Date(3000L)));
+		eventJournal.flush();
+
+		//ASSERT
+		assertTrue(appendedBeforeOpen.isCompletedExceptionally());
+		assertTrue(appendedWhileOpen.isDone() && !appendedWhileOpen.isCompletedExceptionally());
+		assertTrue(appendedAfterClose.isCompletedExceptionally());
+		assertEquals(1, eventJournal.getAppendedEventCount());
+		assertEquals(2, eventJournal.getDroppedEventCount());
+		UserRegistry restartedRegistry = copyWithoutHistory(userRegistry);
+		assertEquals(1, new EventJournal(journalDirectory, 1 << 20, Duration.ofHours(1), true).replay(restartedRegistry, name -> null));
+		assertEquals(2, restartedRegistry.getByName("user0").getLastVisitedLocation().location.latitude);
+	}
+
+	private UserRegistry users(int userNumber) {
+		UserRegistry userRegistry = new UserRegistry();
+		for (int i = 0; i < userNumber; i++) {
+			userRegistry.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+		}
+		return userRegistry;
+	}
+
+	private UserRegistry copyWithoutHistory(UserRegistry userRegistry) {
+		UserRegistry copy = new UserRegistry();
+		for (User user : userRegistry) {
+			copy.add(new User(user.getUserId(), user.getUserName(), user.getPhoneNumber(), user.getEmailAddress()));
+		}
+		return copy;
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(journalDirectory)) {
+			return files.sorted().collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.openclassrooms.tourguide.unitTest.persistence;
+
+import com.openclassrooms.tourguide.model.LocationRetentionPolicy;
+import com.openclassrooms.tourguide.model.LocationSummary;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.persistence.EventJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshotStore;
+import com.openclassrooms.tourguide.registry.UserRegistry;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUserSnapshotStore {
+
+	private final Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+	private final Attraction closedAttraction = new Attraction("Closed", "Nowhere", "NV", 36.0, -115.0);
+
+	@TempDir
+	Path snapshotDirectory;
+
+	@Test
+	public void load_shouldRestoreTheUsersWrittenBefore() throws IOException {
+		//ARRANGE
+		UserSnapshotStore userSnapshotStore = new UserSnapshotStore(snapshotDirectory.resolve("users.snapshot"), Duration.ofMinutes(5), true);
+		UserRegistry userRegistry = new UserRegistry();
+		for (int i = 0; i < 200; i++) {
+			userRegistry.add(user("user" + i));
+		}
+		User user = userRegistry.getByName("user7");
+		user.setPhoneNumber(null);
+		user.setLatestLocationTimestamp(new Date(1_700_000_000_000L));
+		user.getUserPreferences().setNumberOfChildren(2);
+		Attraction restoredDisneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+
+		//ACT
+		int writtenUserCount = userSnapshotStore.write(userRegistry);
+		UserRegistry restoredRegistry = new UserRegistry();
+		int loadedUserCount = userSnapshotStore.load(restoredRegistry, name -> name.equals("Disneyland") ? restoredDisneyland : null);
+
+		//ASSERT
+		assertEquals(200, writtenUserCount);
+		assertEquals(200, loadedUserCount);
+		User restoredUser = restoredRegistry.getById(user.getUserId());
+		assertEquals("user7", restoredUser.getUserName());
+		assertNull(restoredUser.getPhoneNumber());
+		assertEquals("user7@tourGuide.com", restoredUser.getEmailAddress());
+		assertEquals(1_700_000_000_000L, restoredUser.getLatestLocationTimestamp().getTime());
+		assertEquals(2, restoredUser.getUserPreferences().getNumberOfChildren());
+
+		List<LocationSummary> summaries = user.getLocationSummaries();
+		List<LocationSummary> restoredSummaries = restoredUser.getLocationSummaries();
+		assertFalse(summaries.isEmpty());
+		assertEquals(summaries.size(), restoredSummaries.size());
+		for (int i = 0; i < summaries.size(); i++) {
+			assertEquals(summaries.get(i).period, restoredSummaries.get(i).period);
+			assertEquals(summaries.get(i).periodStart, restoredSummaries.get(i).periodStart);
+			assertEquals(summaries.get(i).getLocationCount(), restoredSummaries.get(i).getLocationCount());
+		}
+		List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+		List<VisitedLocation> restoredLocations = restoredUser.getVisitedLocations();
+		assertEquals(visitedLocations.size(), restoredLocations.size());
+		for (int i = 0; i < visitedLocations.size(); i++) {
+			assertEquals(visitedLocations.get(i).location.latitude, restoredLocations.get(i).location.latitude);
+			assertEquals(visitedLocations.get(i).timeVisited, restoredLocations.get(i).timeVisited);
+		}
+
+		assertEquals(2, restoredUser.getUserRewards().size());
+		assertSame(restoredDisneyland, restoredUser.getUserRewards().get(0).attraction);
+		assertEquals(100, restoredUser.getUserRewards().get(0).getRewardPoints());
+		assertTrue(restoredUser.isAttractionRewarded(restoredDisneyland.attractionId));
+		assertEquals("Closed", restoredUser.getUserRewards().get(1).attraction.attractionName);
+		// Restored locations are evaluated for rewards again
+		assertEquals(restoredLocations.size(), restoredUser.pollLocationsToEvaluateForRewards(1).size());
+	}
+
+	@Test
+	public void load_whenSnapshotCorrupted_shouldThrowIOException() throws IOException {
+		//ARRANGE
+		Path snapshotPath = snapshotDirectory.resolve("users.snapshot");
+		UserSnapshotStore userSnapshotStore = new UserSnapshotStore(snapshotPath, Duration.ofMinutes(5), true);
+		UserRegistry userRegistry = new UserRegistry();
+		userRegistry.add(user("jon"));
+		userSnapshotStore.write(userRegistry);
+
+		//ACT
+		try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 42 }), channel.size() - 10);
+		}
+
+		//ASSERT
+		assertThrows(IOException.class, () -> userSnapshotStore.load(new UserRegistry(), name -> null));
+		Files.write(snapshotPath, new byte[] { 1, 2, 3 });
+		assertThrows(IOException.class, () -> userSnapshotStore.load(new UserRegistry(), name -> null));
+		assertFalse(UserSnapshotStore.disabled().exists());
+	}
+
+	@Test
+	public void load_whenRecordCorrupted_shouldNotAddAnyUser() throws IOException {
+		//ARRANGE
+		Path snapshotPath = snapshotDirectory.resolve("users.snapshot");
+		UserSnapshotStore userSnapshotStore = new UserSnapshotStore(snapshotPath, Duration.ofMinutes(5), true);
+		UserRegistry userRegistry = new UserRegistry();
+		for (int i = 0; i < 50; i++) {
+			userRegistry.add(user("user" + i));
+		}
+		userSnapshotStore.write(userRegistry);
+
+		//ACT
+			//the user name length of the last record, after the header (20 bytes), the record offsets and the user id, is
+			//made negative, the checksum being updated so that only the decoding of that record fails
+		ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+		int lastRecordStart = (int) snapshot.getLong(20 + 49 * Long.BYTES);
+		snapshot.putInt(lastRecordStart + 2 * Long.BYTES, -42);
+		CRC32C crc = new CRC32C();
+		crc.update(snapshot.slice(20, snapshot.capacity() - 20));
+		snapshot.putLong(3 * Integer.BYTES, crc.getValue());
+		Files.write(snapshotPath, snapshot.array());
+		UserRegistry restoredRegistry = new UserRegistry();
+
+		//ASSERT
+		assertThrows(IOException.class, () -> userSnapshotStore.load(restoredRegistry, name -> null));
+		assertEquals(0, restoredRegistry.size());
+	}
+
+	@Test
+	public void start_shouldWriteSnapshotsPeriodically() throws InterruptedException {
+		//ARRANGE
+		Path snapshotPath = snapshotDirectory.resolve("periodic/users.snapshot");
+		UserSnapshotStore userSnapshotStore = new UserSnapshotStore(snapshotPath, Duration.ofMillis(50), true);
+		UserRegistry userRegistry = new UserRegistry();
+		userRegistry.add(user("jon"));
+
+		//ACT
+		userSnapshotStore.start(userRegistry, EventJournal.disabled());
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!userSnapshotStore.exists() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		userSnapshotStore.stop();
+
+		//ASSERT
+		assertTrue(userSnapshotStore.exists());
+		assertThrows(IllegalArgumentException.class, () -> new UserSnapshotStore(snapshotPath, Duration.ZERO, true));
+	}
+
+	private User user(String userName) {
+		User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com", new LocationRetentionPolicy(5, 3, 10));
+		long start = 1_700_006_400_000L;
+		for (int i = 0; i < 30; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, -i), new Date(start + i * 20 * 60 * 1000L)));
+		}
+		user.pollLocationsToEvaluateForRewards(1);
+		user.addUserReward(new UserReward(user.getLastVisitedLocation(), disneyland, 100));
+		user.addUserReward(new UserReward(user.getLastVisitedLocation(), closedAttraction, 50));
+		return user;
+	}
+}
@@ -0,0 +1,141 @@
+package com.openclassrooms.tourguide.unitTest.registry;
+
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.registry.UserRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUserRegistry {
+
+	@Test
+	public void add_shouldIndexTheUserByNameAndById() {
+		//ARRANGE
+		UserRegistry userRegistry = new UserRegistry();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User sameNameUser = new User(UUID.randomUUID(), "jon", "000", "jon2@tourGuide.com");
+
+		//ACT
+		boolean added = userRegistry.add(user);
+		boolean sameNameAdded = userRegistry.add(sameNameUser);
+
+		//ASSERT
+		assertTrue(added);
+		assertFalse(sameNameAdded);
+		assertSame(user, userRegistry.getByName("jon"));
+		assertSame(user, userRegistry.getById(user.getUserId()));
+		assertNull(userRegistry.getById(sameNameUser.getUserId()));
+		assertEquals(1, userRegistry.size());
+	}
+
+	@Test
+	public void add_whenUserIdTaken_shouldNotIndexTheUser() {
+		//ARRANGE
+		UserRegistry userRegistry = new UserRegistry();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User sameIdUser = new User(user.getUserId(), "jane", "000", "jane@tourGuide.com");
+
+		//ACT
+		boolean added = userRegistry.add(user);
+		boolean sameIdAdded = userRegistry.add(sameIdUser);
+
+		//ASSERT
+		assertTrue(added);
+		assertFalse(sameIdAdded);
+		assertSame(user, userRegistry.getById(user.getUserId()));
+		assertNull(userRegistry.getByName("jane"));
+		assertEquals(1, userRegistry.size());
+	}
+
+	@Test
+	public void add_whenUserNameTaken_shouldReleaseTheUserId() {
+		//ARRANGE
+		UserRegistry userRegistry = new UserRegistry();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User sameNameUser = new User(UUID.randomUUID(), "jon", "000", "jon2@tourGuide.com");
+		User retriedUser = new User(sameNameUser.getUserId(), "jane", "000", "jane@tourGuide.com");
+
+		//ACT
+		userRegistry.add(user);
+		userRegistry.add(sameNameUser);
+		boolean retriedAdded = userRegistry.add(retriedUser);
+
+		//ASSERT
+			// The userId claimed by the rejected user is free again
+		assertTrue(retriedAdded);
+		assertSame(retriedUser, userRegistry.getById(sameNameUser.getUserId()));
+		assertSame(retriedUser, userRegistry.getByName("jane"));
+		assertEquals(2, userRegistry.size());
+	}
+
+	@Test
+	public void remove_shouldRemoveTheUserFromBothIndexes() {
+		//ARRANGE
+		UserRegistry userRegistry = new UserRegistry();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		userRegistry.add(user);
+
+		//ACT
+		User removedUser = userRegistry.remove("jon");
+
+		//ASSERT
+		assertSame(user, removedUser);
+		assertNull(userRegistry.remove("jon"));
+		assertNull(userRegistry.getByName("jon"));
+		assertNull(userRegistry.getById(user.getUserId()));
+		assertTrue(userRegistry.isEmpty());
+	}
+
+	@Test
+	public void parallelStream_whileUsersAreAdded_shouldVisitEveryUserPresentBefore() throws InterruptedException {
+		//ARRANGE
+		UserRegistry userRegistry = new UserRegistry();
+		for (int i = 0; i < 10_000; i++) {
+			userRegistry.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+		}
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		CountDownLatch writerStarted = new CountDownLatch(1);
+		executorService.execute(() -> {
+			writerStarted.countDown();
+			for (int i = 10_000; i < 20_000; i++) {
+				userRegistry.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+			}
+		});
+		writerStarted.await();
+
+		//ACT
+		long initialUsersVisited = userRegistry.parallelStream()
+				.filter(user -> Integer.parseInt(user.getUserName().substring(4)) < 10_000)
+				.count();
+		AtomicInteger iteratedUsers = new AtomicInteger();
+		userRegistry.forEach(user -> iteratedUsers.incrementAndGet());
+		executorService.shutdown();
+		executorService.awaitTermination(1, TimeUnit.MINUTES);
+		List<User> iteratedAfterWrites = new ArrayList<>();
+		userRegistry.iterator().forEachRemaining(iteratedAfterWrites::add);
+		Spliterator<User> spliterator = userRegistry.spliterator();
+
+		//ASSERT
+		assertEquals(10_000, initialUsersVisited);
+		assertTrue(iteratedUsers.get() >= 10_000);
+		assertEquals(20_000, iteratedAfterWrites.size());
+		assertEquals(20_000, userRegistry.stream().count());
+		assertTrue(spliterator.hasCharacteristics(Spliterator.CONCURRENT));
+		assertNotNull(spliterator.trySplit());
+	}
+}
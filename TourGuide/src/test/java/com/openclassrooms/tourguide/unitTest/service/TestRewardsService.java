@@ -7,16 +7,21 @@ import com.openclassrooms.tourguide.model.User;
 import com.openclassrooms.tourguide.model.UserReward;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import org.junit.jupiter.api.Test;
 import rewardCentral.RewardCentral;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestRewardsService {
@@ -71,4 +76,110 @@ public class TestRewardsService {
 		assertEquals(attractions.size(), userRewards.size());
 	}
 
+	@Test
+	public void calculateRewards_whenProximityBufferChanged_shouldEvaluateWholeHistoryAgain() {
+		//ARRANGE
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		Attraction attraction = rewardsService.getAttractionCatalog().getSnapshot().getAttractions().get(0);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			//about 69 miles north of the attraction, out of the default proximity buffer
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(attraction.latitude + 1, attraction.longitude), new Date()));
+		rewardsService.calculateRewards(user);
+		int rewardsWithDefaultBuffer = user.getUserRewards().size();
+
+		// ACT
+		rewardsService.calculateRewards(user);
+		int rewardsWithoutNewLocation = user.getUserRewards().size();
+		rewardsService.setProximityBuffer(100);
+		rewardsService.calculateRewards(user);
+
+		//ASSERT
+		assertEquals(0, rewardsWithDefaultBuffer);
+		assertEquals(0, rewardsWithoutNewLocation);
+			//the already evaluated location is evaluated again with the new buffer
+		assertTrue(user.getUserRewards().stream().anyMatch(userReward -> userReward.attraction == attraction));
+	}
+
+	@Test
+	public void calculateRewardsBatch_shouldGrantTheSameRewardsAsCalculateRewards() {
+		//ARRANGE
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		rewardsService.setProximityBuffer(300);
+		List<Attraction> attractions = rewardsService.getAttractionCatalog().getSnapshot().getAttractions();
+		Random random = new Random(5);
+		List<User> individuallyRewardedUsers = new ArrayList<>();
+		List<User> batchRewardedUsers = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			User individuallyRewardedUser = new User(UUID.randomUUID(), "individual" + i, "000", "individual" + i + "@tourGuide.com");
+			User batchRewardedUser = new User(UUID.randomUUID(), "batch" + i, "000", "batch" + i + "@tourGuide.com");
+			for (int j = 0; j < 4; j++) {
+				Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+				Location location = new Location(attraction.latitude + random.nextDouble() * 8 - 4, attraction.longitude + random.nextDouble() * 8 - 4);
+				individuallyRewardedUser.addToVisitedLocations(new VisitedLocation(individuallyRewardedUser.getUserId(), location, new Date()));
+				batchRewardedUser.addToVisitedLocations(new VisitedLocation(batchRewardedUser.getUserId(), location, new Date()));
+			}
+			individuallyRewardedUsers.add(individuallyRewardedUser);
+			batchRewardedUsers.add(batchRewardedUser);
+		}
+
+		// ACT
+		individuallyRewardedUsers.forEach(rewardsService::calculateRewards);
+		rewardsService.calculateRewardsBatch(batchRewardedUsers);
+
+		//ASSERT
+		for (int i = 0; i < 10; i++) {
+			List<UserReward> expectedRewards = individuallyRewardedUsers.get(i).getUserRewards();
+			List<UserReward> batchRewards = batchRewardedUsers.get(i).getUserRewards();
+			assertEquals(expectedRewards.size(), batchRewards.size());
+			for (int j = 0; j < expectedRewards.size(); j++) {
+				assertEquals(expectedRewards.get(j).attraction, batchRewards.get(j).attraction);
+				// Packed visited locations are materialized on each read, they are compared by value
+				assertEquals(expectedRewards.get(j).visitedLocation.location.latitude, batchRewards.get(j).visitedLocation.location.latitude);
+				assertEquals(expectedRewards.get(j).visitedLocation.location.longitude, batchRewards.get(j).visitedLocation.location.longitude);
+			}
+		}
+		assertTrue(batchRewardedUsers.stream().anyMatch(user -> !user.getUserRewards().isEmpty()));
+	}
+
+	@Test
+	public void calculateRewards_whenRewardPointsLookupFails_shouldEvaluateTheLocationsAgain() {
+		//ARRANGE
+		GpsUtil gpsUtil = new GpsUtil();
+		FailingRewardCentral rewardCentral = new FailingRewardCentral();
+		RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+		Attraction attraction = rewardsService.getAttractionCatalog().getSnapshot().getAttractions().get(0);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User batchUser = new User(UUID.randomUUID(), "batch", "000", "batch@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		batchUser.addToVisitedLocations(new VisitedLocation(batchUser.getUserId(), attraction, new Date()));
+		rewardCentral.failing = true;
+		assertThrows(CompletionException.class, () -> rewardsService.calculateRewards(user));
+		rewardsService.calculateRewardsBatch(List.of(batchUser));
+
+		// ACT
+		rewardCentral.failing = false;
+		rewardsService.calculateRewards(user);
+		rewardsService.calculateRewardsBatch(List.of(batchUser));
+
+		//ASSERT
+			//the locations of the failed evaluations were not marked as evaluated
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(1, batchUser.getUserRewards().size());
+	}
+
+	private static class FailingRewardCentral extends RewardCentral {
+		private volatile boolean failing;
+
+		@Override
+		public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+			if (failing) {
+				throw new IllegalStateException("RewardCentral unavailable");
+			}
+			return 1;
+		}
+	}
+
 }
@@ -3,20 +3,44 @@ package com.openclassrooms.tourguide.unitTest.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.openclassrooms.tourguide.dto.CloseAttractionsInfo;
 import com.openclassrooms.tourguide.dto.NearByAttraction;
+import com.openclassrooms.tourguide.dto.UserBatchResult;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.catalog.AttractionCatalog;
+import com.openclassrooms.tourguide.executor.BatchExecutor;
+import com.openclassrooms.tourguide.gateway.RewardCentralGateway;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.persistence.EventJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshotStore;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
 import tripPricer.Provider;
 
 public class TestTourGuideService {
@@ -109,6 +133,29 @@ public class TestTourGuideService {
 		assertEquals(5, attractions.size());
 	}
 
+	@Test
+	public void getNearbyAttractions_whenCountAndProximityConfigured_shouldReturnTheNearestWithinTheProximity() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		tourGuideService.setNearbyAttractionCount(3);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		// Disneyland, the next attraction, the San Diego Zoo, lying 87 miles away
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date());
+
+		List<NearByAttraction> attractions = tourGuideService.getNearByAttractions(visitedLocation, user);
+		user.getUserPreferences().setAttractionProximity(20);
+		List<NearByAttraction> attractionsWithinProximity = tourGuideService.getNearByAttractions(visitedLocation, user);
+
+		assertEquals(3, attractions.size());
+		assertEquals("Disneyland", attractions.get(0).getAttractionName());
+		assertTrue(attractions.get(1).getAttractionDistanceFromUserLocation() <= attractions.get(2).getAttractionDistanceFromUserLocation());
+		assertEquals(1, attractionsWithinProximity.size());
+		assertEquals("Disneyland", attractionsWithinProximity.get(0).getAttractionName());
+	}
+
 	@Test
 	public void getTripDeals() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -125,4 +172,143 @@ public class TestTourGuideService {
 		assertEquals(5, providers.size());
 	}
 
+	@Test
+	public void constructor_whenSnapshotExists_shouldRestoreItsUsersInsteadOfGeneratingThem(@TempDir Path snapshotDirectory) throws IOException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		UserSnapshotStore userSnapshotStore = new UserSnapshotStore(snapshotDirectory.resolve("users.snapshot"), Duration.ofHours(1), true);
+		InternalTestHelper.setInternalUserNumber(5);
+		TourGuideService snapshottedService = new TourGuideService(gpsUtil, rewardsService, BatchExecutor.getDefault(),
+				new InternalUserGenerator(1L, false), userSnapshotStore);
+		snapshottedService.tracker.stopTracking();
+		userSnapshotStore.stop();
+		userSnapshotStore.write(snapshottedService.getUserRegistry());
+
+		InternalTestHelper.setInternalUserNumber(3);
+		TourGuideService restoredService = new TourGuideService(gpsUtil, rewardsService, BatchExecutor.getDefault(),
+				new InternalUserGenerator(2L, false), userSnapshotStore);
+		restoredService.tracker.stopTracking();
+		userSnapshotStore.stop();
+
+		assertEquals(5, restoredService.getAllUsers().size());
+		for (User user : snapshottedService.getAllUsers()) {
+			User restoredUser = restoredService.getUser(user.getUserName());
+			assertEquals(user.getUserId(), restoredUser.getUserId());
+			assertEquals(user.getVisitedLocations().size(), restoredUser.getVisitedLocations().size());
+		}
+	}
+
+	@Test
+	public void constructor_whenJournalExists_shouldReplayItBeforeTrackingTheUsers(@TempDir Path journalDirectory) throws IOException {
+		GpsUtil gpsUtil = new GpsUtil();
+		User generatedUser = new InternalUserGenerator(1L, false).generateUser(0);
+		EventJournal previousJournal = new EventJournal(journalDirectory, 1 << 20, Duration.ofHours(1), true);
+		previousJournal.open();
+		previousJournal.appendLocation(generatedUser, new VisitedLocation(generatedUser.getUserId(), new Location(42, 42),
+				new Date(System.currentTimeMillis() - 60_000)));
+		previousJournal.close();
+		EventJournal eventJournal = new EventJournal(journalDirectory, 1 << 20, Duration.ofHours(1), true);
+		RewardsService rewardsService = new RewardsService(new AttractionCatalog(gpsUtil), new RewardCentralGateway(new RewardCentral()),
+				new RewardPointsCache(), BatchExecutor.getDefault(), eventJournal);
+		InternalTestHelper.setInternalUserNumber(1);
+
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, BatchExecutor.getDefault(),
+				new InternalUserGenerator(1L, false), UserSnapshotStore.disabled());
+		tourGuideService.tracker.stopTracking();
+		eventJournal.close();
+
+		// Replayed before the first tick could give the user a more recent location
+		assertTrue(tourGuideService.getUser("internalUser0").getVisitedLocations().stream()
+				.anyMatch(visitedLocation -> visitedLocation.location.latitude == 42 && visitedLocation.location.longitude == 42));
+	}
+
+	@Test
+	public void getUserLocation_whenCalledConcurrentlyForUserWithoutLocation_shouldLocateTheUserOnce() throws Exception {
+		AtomicInteger gpsCalls = new AtomicInteger();
+		CountDownLatch locatingStarted = new CountDownLatch(1);
+		CountDownLatch releaseLocating = new CountDownLatch(1);
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				gpsCalls.incrementAndGet();
+				locatingStarted.countDown();
+				try {
+					releaseLocating.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.getUserLocation(userId);
+			}
+		};
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		int requestCount = 8;
+		ExecutorService executorService = Executors.newFixedThreadPool(requestCount);
+
+		List<Future<VisitedLocation>> requests = new ArrayList<>();
+		for (int i = 0; i < requestCount; i++) {
+			requests.add(executorService.submit(() -> tourGuideService.getUserLocation(user)));
+		}
+		assertTrue(locatingStarted.await(5, TimeUnit.SECONDS));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (tourGuideService.getCoalescedLocationResolutionCount() < requestCount - 1 && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		releaseLocating.countDown();
+		for (Future<VisitedLocation> request : requests) {
+			assertEquals(user.getUserId(), request.get(5, TimeUnit.SECONDS).userId);
+		}
+		executorService.shutdown();
+
+		assertEquals(1, gpsCalls.get());
+		assertEquals(1, user.getVisitedLocations().size());
+	}
+
+	@Test
+	public void getUserLocation_whenLastLocationOlderThanFreshnessWindow_shouldLocateTheUserAgain() throws ExecutionException, InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, BatchExecutor.getDefault(),
+				new InternalUserGenerator(), UserSnapshotStore.disabled(), new TripDealsCache(), Duration.ofMinutes(5));
+		tourGuideService.tracker.stopTracking();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Date oneHourAgo = new Date(System.currentTimeMillis() - Duration.ofHours(1).toMillis());
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), oneHourAgo));
+
+		VisitedLocation firstLocation = tourGuideService.getUserLocation(user);
+		VisitedLocation secondLocation = tourGuideService.getUserLocation(user);
+
+		assertTrue(firstLocation.timeVisited.after(oneHourAgo));
+		assertEquals(firstLocation.timeVisited, secondLocation.timeVisited);
+		assertEquals(2, user.getVisitedLocations().size());
+	}
+
+	@Test
+	public void getNearByAttractions_whenBatchHasUnknownUser_shouldOnlyFailThatUser() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		tourGuideService.addUser(user);
+		tourGuideService.addUser(user2);
+
+		List<UserBatchResult<CloseAttractionsInfo>> results = tourGuideService.getNearByAttractions(List.of("jon", "unknown", "jon2"));
+		List<UserBatchResult<List<UserReward>>> rewards = tourGuideService.getUserRewards(List.of("unknown", "jon2"));
+
+		assertEquals(List.of("jon", "unknown", "jon2"), results.stream().map(UserBatchResult::getUserName).toList());
+		assertTrue(results.get(0).isSuccess());
+		assertEquals(5, results.get(0).getResult().getNearByAttractions().size());
+		assertEquals(user.getLastVisitedLocation().location.latitude, results.get(0).getResult().getUserLocationLatitude());
+		assertEquals("Unknown user", results.get(1).getError());
+		assertTrue(results.get(2).isSuccess());
+		assertEquals("Unknown user", rewards.get(0).getError());
+		assertEquals(user2.getUserRewards(), rewards.get(1).getResult());
+	}
 }
@@ -0,0 +1,103 @@
+package com.openclassrooms.tourguide.unitTest.spatial;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.spatial.AttractionDistanceKernel;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestAttractionDistanceKernel {
+
+	private static final double[] RADII = {0, 10, 200, 1000, 12000, Integer.MAX_VALUE};
+
+	@Test
+	public void milesTo_shouldBeBitIdenticalToRewardsServiceGetDistance() {
+		//ARRANGE
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = buildAttractions();
+		AttractionDistanceKernel distanceKernel = new AttractionDistanceKernel(attractions);
+		double[] miles = new double[distanceKernel.size()];
+
+		//ACT & ASSERT
+		for (Location location : buildLocations()) {
+			distanceKernel.milesTo(location, miles);
+			for (int i = 0; i < attractions.size(); i++) {
+				double expected = rewardsService.getDistance(attractions.get(i), location);
+				assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(miles[i]));
+				assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(distanceKernel.miles(i, location)));
+			}
+		}
+	}
+
+	@Test
+	public void findWithin_shouldMatchBruteForceScan() {
+		//ARRANGE
+		List<Attraction> attractions = buildAttractions();
+		AttractionDistanceKernel distanceKernel = new AttractionDistanceKernel(attractions);
+		double[] miles = new double[distanceKernel.size()];
+
+		//ACT & ASSERT
+		for (Location location : buildLocations()) {
+			distanceKernel.milesTo(location, miles);
+			for (double radius : RADII) {
+				int[] expected = new int[0];
+				for (int i = 0; i < miles.length; i++) {
+					if (miles[i] <= radius) {
+						expected = Arrays.copyOf(expected, expected.length + 1);
+						expected[expected.length - 1] = i;
+					}
+				}
+				assertArrayEquals(expected, distanceKernel.findWithin(location, radius));
+			}
+		}
+	}
+
+	@Test
+	public void findWithin_whenCandidatesGiven_shouldOnlyTestThem() {
+		//ARRANGE
+		Attraction first = new Attraction("First", "city", "state", 10, 179.95);
+		Attraction second = new Attraction("Second", "city", "state", 10, -179.95);
+		AttractionDistanceKernel distanceKernel = new AttractionDistanceKernel(List.of(first, second));
+
+		//ACT
+		int[] indexes = distanceKernel.findWithin(new Location(10, -179.99), 10, new int[] {1});
+
+		//ASSERT
+		assertArrayEquals(new int[] {1}, indexes);
+	}
+
+	private static List<Attraction> buildAttractions() {
+		Random random = new Random(3);
+		List<Attraction> attractions = new ArrayList<>(new GpsUtil().getAttractions());
+		attractions.add(new Attraction("Antimeridian East", "city", "state", 0.5, 179.9));
+		attractions.add(new Attraction("Antimeridian West", "city", "state", 0.5, -179.9));
+		attractions.add(new Attraction("North Pole", "city", "state", 89.9, 12));
+		for (int i = 0; i < 200; i++) {
+			attractions.add(new Attraction("Attraction " + i, "city", "state", -90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360));
+		}
+		return attractions;
+	}
+
+	private static List<Location> buildLocations() {
+		Random random = new Random(11);
+		List<Location> locations = new ArrayList<>();
+		locations.add(new Location(0.5, 180));
+		locations.add(new Location(89.99, -45));
+		locations.add(new Location(33.817595, -117.922008));
+		for (int i = 0; i < 200; i++) {
+			locations.add(new Location(-90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360));
+		}
+		return locations;
+	}
+}
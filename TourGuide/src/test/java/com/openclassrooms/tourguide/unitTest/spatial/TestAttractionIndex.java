@@ -0,0 +1,169 @@
+package com.openclassrooms.tourguide.unitTest.spatial;
+
+import com.openclassrooms.tourguide.spatial.AttractionIndex;
+import com.openclassrooms.tourguide.spatial.AttractionIndex.RankedAttraction;
+import com.openclassrooms.tourguide.spatial.GeoDistance;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestAttractionIndex {
+
+	private static final double[] RADII = {0, 10, 200, 1000, 5000, 12000, Integer.MAX_VALUE};
+
+	@Test
+	public void findWithin_shouldMatchBruteForceScan() {
+		//ARRANGE
+		List<Attraction> attractions = buildAttractions();
+		AttractionIndex attractionIndex = new AttractionIndex(attractions);
+
+		//ACT & ASSERT
+		for (Location location : buildLocations()) {
+			for (double radius : RADII) {
+				List<Attraction> expected = new ArrayList<>();
+				for (Attraction attraction : attractions) {
+					if (GeoDistance.miles(attraction, location) <= radius) {
+						expected.add(attraction);
+					}
+				}
+				assertEquals(expected, attractionIndex.findWithin(location, radius));
+			}
+		}
+	}
+
+	@Test
+	public void findWithin_whenManyAttractions_shouldMatchBruteForceScanThroughTheGrid() {
+		//ARRANGE
+		Random random = new Random(7);
+		List<Attraction> attractions = buildAttractions();
+		for (int i = 0; i < 500; i++) {
+			attractions.add(new Attraction("Attraction " + i, "city", "state", -90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360));
+		}
+		AttractionIndex attractionIndex = new AttractionIndex(attractions);
+
+		//ACT & ASSERT
+		for (Location location : buildLocations()) {
+			for (double radius : RADII) {
+				List<Attraction> expected = new ArrayList<>();
+				for (Attraction attraction : attractions) {
+					if (GeoDistance.miles(attraction, location) <= radius) {
+						expected.add(attraction);
+					}
+				}
+				assertEquals(expected, attractionIndex.findWithin(location, radius));
+			}
+		}
+	}
+
+	@Test
+	public void findWithinAll_shouldMatchFindWithinForEachLocation() {
+		//ARRANGE
+		Random random = new Random(13);
+		List<Attraction> manyAttractions = buildAttractions();
+		for (int i = 0; i < 500; i++) {
+			manyAttractions.add(new Attraction("Attraction " + i, "city", "state", -90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360));
+		}
+		List<Location> locations = buildLocations();
+
+		for (AttractionIndex attractionIndex : List.of(new AttractionIndex(buildAttractions()), new AttractionIndex(manyAttractions),
+				new AttractionIndex(manyAttractions, 7))) {
+			for (double radius : RADII) {
+				//ACT
+				List<List<Attraction>> attractionsByLocation = attractionIndex.findWithinAll(locations, radius);
+
+				//ASSERT
+				assertEquals(locations.size(), attractionsByLocation.size());
+				for (int i = 0; i < locations.size(); i++) {
+					assertEquals(attractionIndex.findWithin(locations.get(i), radius), attractionsByLocation.get(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void findNearest_shouldMatchBruteForceRanking() {
+		//ARRANGE
+		List<Attraction> attractions = buildAttractions();
+		AttractionIndex attractionIndex = new AttractionIndex(attractions, 5);
+
+		//ACT & ASSERT
+		for (Location location : buildLocations()) {
+			List<Attraction> expected = new ArrayList<>(attractions);
+			expected.sort((first, second) -> Double.compare(GeoDistance.miles(first, location), GeoDistance.miles(second, location)));
+
+			assertEquals(expected.subList(0, 5), attractionIndex.findNearest(location, 5));
+			assertEquals(expected, attractionIndex.findNearest(location, attractions.size() + 10));
+		}
+	}
+
+	@Test
+	public void rankNearest_shouldMatchBruteForceRankingWithinTheMaximumRadius() {
+		//ARRANGE
+		List<Attraction> attractions = buildAttractions();
+		AttractionIndex attractionIndex = new AttractionIndex(attractions, 5);
+
+		//ACT & ASSERT
+		for (Location location : buildLocations()) {
+			for (double radius : RADII) {
+				List<Attraction> expected = new ArrayList<>();
+				for (Attraction attraction : attractions) {
+					if (GeoDistance.miles(attraction, location) <= radius) {
+						expected.add(attraction);
+					}
+				}
+				expected.sort((first, second) -> Double.compare(GeoDistance.miles(first, location), GeoDistance.miles(second, location)));
+
+				List<RankedAttraction> rankedAttractions = attractionIndex.rankNearest(location, 5, radius);
+				assertEquals(expected.subList(0, Math.min(5, expected.size())),
+						rankedAttractions.stream().map(RankedAttraction::attraction).toList());
+				for (RankedAttraction rankedAttraction : rankedAttractions) {
+					assertEquals(GeoDistance.miles(rankedAttraction.attraction(), location), rankedAttraction.distanceMiles());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void findWithin_whenCrossingTheAntimeridian_shouldFindAttractionOnTheOtherSide() {
+		//ARRANGE
+		Attraction eastAttraction = new Attraction("East", "city", "state", 10, 179.95);
+		Attraction westAttraction = new Attraction("West", "city", "state", 10, -179.95);
+		AttractionIndex attractionIndex = new AttractionIndex(List.of(eastAttraction, westAttraction));
+
+		//ACT
+		List<Attraction> attractions = attractionIndex.findWithin(new Location(10, -179.99), 10);
+
+		//ASSERT
+		assertEquals(List.of(eastAttraction, westAttraction), attractions);
+	}
+
+	private static List<Attraction> buildAttractions() {
+		List<Attraction> attractions = new ArrayList<>(new GpsUtil().getAttractions());
+		attractions.add(new Attraction("Antimeridian East", "city", "state", 0.5, 179.9));
+		attractions.add(new Attraction("Antimeridian West", "city", "state", 0.5, -179.9));
+		attractions.add(new Attraction("North Pole", "city", "state", 89.9, 12));
+		attractions.add(new Attraction("South Pole", "city", "state", -89.95, -170));
+		return attractions;
+	}
+
+	private static List<Location> buildLocations() {
+		Random random = new Random(42);
+		List<Location> locations = new ArrayList<>();
+		locations.add(new Location(0.5, 180));
+		locations.add(new Location(0.5, -180));
+		locations.add(new Location(89.99, -45));
+		locations.add(new Location(-89.99, 100));
+		locations.add(new Location(33.817595, -117.922008));
+		for (int i = 0; i < 300; i++) {
+			locations.add(new Location(-90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360));
+		}
+		return locations;
+	}
+}
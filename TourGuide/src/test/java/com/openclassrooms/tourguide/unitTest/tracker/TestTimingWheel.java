@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.unitTest.tracker;
+
+import com.openclassrooms.tourguide.tracker.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTimingWheel {
+
+	private static final long TICK = Duration.ofSeconds(1).toNanos();
+
+	@Test
+	public void advance_shouldReleaseOnlyTheItemsDue() {
+		//ARRANGE
+		TimingWheel<String> timingWheel = new TimingWheel<>(Duration.ofSeconds(1), 8, 0);
+		timingWheel.schedule("first", 2 * TICK);
+		timingWheel.schedule("second", 5 * TICK + TICK / 2);
+
+		//ACT
+		List<String> dueAtOne = timingWheel.advance(TICK);
+		List<String> dueAtTwo = timingWheel.advance(2 * TICK);
+		List<String> dueAtFive = timingWheel.advance(5 * TICK);
+
+		//ASSERT
+		assertTrue(dueAtOne.isEmpty());
+		assertEquals(List.of("first"), dueAtTwo);
+		assertEquals(List.of("second"), dueAtFive);
+		assertEquals(0, timingWheel.size());
+	}
+
+	@Test
+	public void advance_whenItemDueAfterSeveralRevolutions_shouldKeepItUntilItsTick() {
+		//ARRANGE
+		TimingWheel<String> timingWheel = new TimingWheel<>(Duration.ofSeconds(1), 4, 0);
+			//same bucket as tick 3, two revolutions later
+		timingWheel.schedule("late", 11 * TICK);
+		timingWheel.schedule("early", 3 * TICK);
+
+		//ACT
+		List<String> dueAtThree = timingWheel.advance(3 * TICK);
+		List<String> dueAtTen = timingWheel.advance(10 * TICK);
+		List<String> dueAtEleven = timingWheel.advance(11 * TICK);
+
+		//ASSERT
+		assertEquals(List.of("early"), dueAtThree);
+		assertTrue(dueAtTen.isEmpty());
+		assertEquals(List.of("late"), dueAtEleven);
+	}
+
+	@Test
+	public void advance_whenSeveralRevolutionsSkipped_shouldReleaseEveryItemDue() {
+		//ARRANGE
+		TimingWheel<Integer> timingWheel = new TimingWheel<>(Duration.ofSeconds(1), 4, 0);
+		for (int i = 0; i < 20; i++) {
+			timingWheel.schedule(i, i * TICK);
+		}
+			//an item due in the past is released by the next advance
+		timingWheel.advance(0);
+		timingWheel.schedule(100, 0);
+
+		//ACT
+		List<Integer> dueItems = timingWheel.advance(15 * TICK);
+
+		//ASSERT
+		assertEquals(16, dueItems.size());
+		assertTrue(dueItems.contains(100));
+		assertEquals(4, timingWheel.size());
+		assertEquals(4, timingWheel.getWheelSize());
+	}
+}
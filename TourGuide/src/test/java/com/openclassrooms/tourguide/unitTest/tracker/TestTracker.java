@@ -0,0 +1,102 @@
+package com.openclassrooms.tourguide.unitTest.tracker;
+
+import com.openclassrooms.tourguide.executor.BatchExecutor;
+import com.openclassrooms.tourguide.executor.BatchExecutor.BackpressurePolicy;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import gpsUtil.GpsUtil;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTracker {
+
+	@Test
+	public void tick_whenShardsTrackedWithinTheInterval_shouldTrackEveryUserOnceWithoutOverrun() throws InterruptedException {
+		//ARRANGE
+		TourGuideService tourGuideService = tourGuideServiceWithUsers(20);
+		BatchExecutor batchExecutor = new BatchExecutor(4, 4, 10, BackpressurePolicy.CALLER_RUNS, 20);
+
+		//ACT
+		Tracker tracker = new Tracker(tourGuideService, batchExecutor, Duration.ofMinutes(1), 4);
+		tracker.start();
+		waitUntil(() -> tracker.getTickCount() >= 1);
+		tracker.stopTracking();
+		batchExecutor.shutdown();
+
+		//ASSERT
+		assertEquals(0, tracker.getOverrunCount());
+		assertEquals(0, tracker.getPendingUserCount());
+		assertEquals(20, tracker.getWaitingUserCount());
+		tourGuideService.getAllUsers().forEach(user -> {
+			assertEquals(1, user.getVisitedLocations().size());
+			assertEquals(Duration.ofMinutes(1), tracker.getTrackingInterval(user));
+		});
+	}
+
+	@Test
+	public void tick_whenIntervalTooShort_shouldCarryTheRemainingUsersOverToTheNextTick() throws InterruptedException {
+		//ARRANGE
+		TourGuideService tourGuideService = tourGuideServiceWithUsers(10);
+		BatchExecutor batchExecutor = new BatchExecutor(1, 1, 10, BackpressurePolicy.CALLER_RUNS, 20);
+
+		//ACT
+		Tracker tracker = new Tracker(tourGuideService, batchExecutor, Duration.ofMillis(100), 1);
+		tracker.start();
+		waitUntil(() -> tourGuideService.getAllUsers().stream().noneMatch(user -> user.getVisitedLocations().isEmpty()));
+		tracker.stopTracking();
+		batchExecutor.shutdown();
+
+		//ASSERT
+			//tracking 10 users takes at least 300 ms, so the first sweep is spread over several ticks
+		assertTrue(tracker.getTickCount() > 1);
+		assertTrue(tracker.getOverrunCount() >= 1);
+	}
+
+	@Test
+	public void getShard_shouldBeStableAndWithinTheShardCount() {
+		//ARRANGE
+		TourGuideService tourGuideService = tourGuideServiceWithUsers(50);
+		Tracker tracker = new Tracker(tourGuideService, BatchExecutor.getDefault(), Duration.ofMinutes(1), 8);
+		tracker.stopTracking();
+
+		//ACT
+		List<Integer> shards = tourGuideService.getAllUsers().stream().map(tracker::getShard).collect(Collectors.toList());
+
+		//ASSERT
+		assertEquals(8, tracker.getShardCount());
+		assertTrue(shards.stream().allMatch(shard -> shard >= 0 && shard < 8));
+		assertEquals(shards, tourGuideService.getAllUsers().stream().map(tracker::getShard).collect(Collectors.toList()));
+	}
+
+	private static TourGuideService tourGuideServiceWithUsers(int userCount) {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		IntStream.range(0, userCount).forEach(i -> tourGuideService.addUser(
+				new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com")));
+		return tourGuideService;
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 20_000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
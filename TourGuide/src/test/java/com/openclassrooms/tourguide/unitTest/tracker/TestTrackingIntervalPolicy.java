@@ -0,0 +1,78 @@
+package com.openclassrooms.tourguide.unitTest.tracker;
+
+import com.openclassrooms.tourguide.spatial.AttractionIndex;
+import com.openclassrooms.tourguide.tracker.TrackingIntervalPolicy;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestTrackingIntervalPolicy {
+
+	private final AttractionIndex attractionIndex = new AttractionIndex(List.of(
+			new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008)));
+	private final TrackingIntervalPolicy trackingIntervalPolicy = new TrackingIntervalPolicy(() -> attractionIndex,
+			Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(30), 10, 0.1);
+
+	@Test
+	public void nextInterval_whenNearAnAttraction_shouldReturnMinInterval() {
+		//ACT
+		Duration nextInterval = trackingIntervalPolicy.nextInterval(visitedLocation(33.8, -117.9), visitedLocation(33.8, -117.9),
+				Duration.ofMinutes(20));
+
+		//ASSERT
+		assertEquals(Duration.ofMinutes(1), nextInterval);
+	}
+
+	@Test
+	public void nextInterval_whenMovedAwayFromAttractions_shouldReturnBaseInterval() {
+		//ACT
+		Duration nextInterval = trackingIntervalPolicy.nextInterval(visitedLocation(40, -100), visitedLocation(41, -100),
+				Duration.ofMinutes(20));
+		Duration firstInterval = trackingIntervalPolicy.nextInterval(null, visitedLocation(41, -100), null);
+
+		//ASSERT
+		assertEquals(Duration.ofMinutes(5), nextInterval);
+		assertEquals(Duration.ofMinutes(5), firstInterval);
+	}
+
+	@Test
+	public void nextInterval_whenStationary_shouldBackOffUpToMaxInterval() {
+		//ARRANGE
+		VisitedLocation location = visitedLocation(40, -100);
+
+		//ACT
+		Duration afterMinInterval = trackingIntervalPolicy.nextInterval(location, location, Duration.ofMinutes(1));
+		Duration afterBaseInterval = trackingIntervalPolicy.nextInterval(location, location, Duration.ofMinutes(5));
+		Duration afterLongInterval = trackingIntervalPolicy.nextInterval(location, location, Duration.ofMinutes(20));
+
+		//ASSERT
+		assertEquals(Duration.ofMinutes(5), afterMinInterval);
+		assertEquals(Duration.ofMinutes(10), afterBaseInterval);
+		assertEquals(Duration.ofMinutes(30), afterLongInterval);
+	}
+
+	@Test
+	public void nextInterval_whenFixedPolicy_shouldAlwaysReturnTheSameInterval() {
+		//ARRANGE
+		TrackingIntervalPolicy fixedPolicy = TrackingIntervalPolicy.fixed(Duration.ofMinutes(5));
+		VisitedLocation location = visitedLocation(33.8, -117.9);
+
+		//ACT
+		Duration nextInterval = fixedPolicy.nextInterval(location, location, Duration.ofMinutes(5));
+
+		//ASSERT
+		assertEquals(Duration.ofMinutes(5), nextInterval);
+	}
+
+	private static VisitedLocation visitedLocation(double latitude, double longitude) {
+		return new VisitedLocation(UUID.randomUUID(), new Location(latitude, longitude), new Date());
+	}
+}